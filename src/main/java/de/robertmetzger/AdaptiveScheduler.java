@@ -0,0 +1,140 @@
+package de.robertmetzger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Derives the interval between two runs of a periodic task from the number of changes the last
+ * runs observed and the remaining API quota.
+ *
+ * <p>The change rate is tracked as an exponentially weighted average. The interval is chosen so
+ * that a run sees about {@link #TARGET_CHANGES_PER_RUN} changes: it gets shorter during bursts of
+ * activity and grows when nothing changes. If less than {@link #LOW_QUOTA_FRACTION} of the quota
+ * is left, the maximum interval is used. The interval always stays within the configured bounds.
+ */
+public class AdaptiveScheduler implements AdaptiveSchedulerMXBean {
+  private static final Logger LOG = LoggerFactory.getLogger(AdaptiveScheduler.class);
+
+  static final double TARGET_CHANGES_PER_RUN = 5;
+  static final double LOW_QUOTA_FRACTION = 0.1;
+  // weight of the latest observation in the change rate
+  private static final double ALPHA = 0.5;
+
+  private final String name;
+  private final int minIntervalSeconds;
+  private final int maxIntervalSeconds;
+
+  private long lastRunNanos = System.nanoTime();
+  private double changesPerSecond;
+  private volatile int intervalSeconds;
+  private volatile int lastChanges = 0;
+  private volatile int lastRemainingQuota = -1;
+  private volatile String lastDecision = "initial";
+
+  /**
+   * @param minIntervalSeconds lower bound, or 0 to use the initial interval
+   * @param maxIntervalSeconds upper bound, or 0 to use the initial interval
+   */
+  public AdaptiveScheduler(
+      String name, int initialIntervalSeconds, int minIntervalSeconds, int maxIntervalSeconds) {
+    this.name = name;
+    this.minIntervalSeconds = minIntervalSeconds > 0 ? minIntervalSeconds : initialIntervalSeconds;
+    this.maxIntervalSeconds =
+        Math.max(
+            this.minIntervalSeconds,
+            maxIntervalSeconds > 0 ? maxIntervalSeconds : initialIntervalSeconds);
+    this.intervalSeconds = clamp(initialIntervalSeconds);
+    // assume the initial interval matches the current activity
+    this.changesPerSecond = TARGET_CHANGES_PER_RUN / Math.max(1, intervalSeconds);
+  }
+
+  /**
+   * @param changes the number of changed items observed by the run which just finished
+   * @param remainingQuota the remaining API requests, or -1 if unknown
+   * @param quotaLimit the API request limit, or -1 if unknown
+   * @return the number of seconds to wait until the next run
+   */
+  public synchronized int nextInterval(int changes, int remainingQuota, int quotaLimit) {
+    long now = System.nanoTime();
+    double elapsedSeconds = (now - lastRunNanos) / 1e9;
+    lastRunNanos = now;
+    return nextInterval(changes, remainingQuota, quotaLimit, elapsedSeconds);
+  }
+
+  synchronized int nextInterval(
+      int changes, int remainingQuota, int quotaLimit, double elapsedSeconds) {
+    double observedRate = changes / Math.max(1, elapsedSeconds);
+    changesPerSecond = ALPHA * observedRate + (1 - ALPHA) * changesPerSecond;
+
+    int interval;
+    String decision;
+    if (quotaLimit > 0 && remainingQuota < quotaLimit * LOW_QUOTA_FRACTION) {
+      interval = maxIntervalSeconds;
+      decision = "low quota";
+    } else if (changesPerSecond * maxIntervalSeconds < TARGET_CHANGES_PER_RUN) {
+      interval = maxIntervalSeconds;
+      decision = "idle";
+    } else {
+      interval = clamp((int) (TARGET_CHANGES_PER_RUN / changesPerSecond));
+      decision = interval < intervalSeconds ? "speed up" : "slow down";
+    }
+
+    if (interval == intervalSeconds) {
+      // e.g. a slow down while already at the maximum interval
+      decision = "unchanged";
+    } else {
+      LOG.info(
+          "Changing {} interval from {} to {} seconds ({}, {} changes, remaining quota {})",
+          name,
+          intervalSeconds,
+          interval,
+          decision,
+          changes,
+          remainingQuota);
+    }
+    intervalSeconds = interval;
+    lastChanges = changes;
+    lastRemainingQuota = remainingQuota;
+    lastDecision = decision;
+    return interval;
+  }
+
+  private int clamp(int interval) {
+    return Math.max(minIntervalSeconds, Math.min(maxIntervalSeconds, interval));
+  }
+
+  @Override
+  public int getIntervalSeconds() {
+    return intervalSeconds;
+  }
+
+  @Override
+  public int getMinIntervalSeconds() {
+    return minIntervalSeconds;
+  }
+
+  @Override
+  public int getMaxIntervalSeconds() {
+    return maxIntervalSeconds;
+  }
+
+  @Override
+  public synchronized double getChangesPerHour() {
+    return changesPerSecond * 3600;
+  }
+
+  @Override
+  public int getLastChanges() {
+    return lastChanges;
+  }
+
+  @Override
+  public int getLastRemainingQuota() {
+    return lastRemainingQuota;
+  }
+
+  @Override
+  public String getLastDecision() {
+    return lastDecision;
+  }
+}
@@ -0,0 +1,18 @@
+package de.robertmetzger;
+
+/** JMX view on the decisions of an {@link AdaptiveScheduler}. */
+public interface AdaptiveSchedulerMXBean {
+  int getIntervalSeconds();
+
+  int getMinIntervalSeconds();
+
+  int getMaxIntervalSeconds();
+
+  double getChangesPerHour();
+
+  int getLastChanges();
+
+  int getLastRemainingQuota();
+
+  String getLastDecision();
+}
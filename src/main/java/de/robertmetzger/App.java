@@ -1,8 +1,11 @@
 package de.robertmetzger;
 
 import com.beust.jcommander.JCommander;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -14,6 +17,10 @@ public class App {
 
   public static void main(String[] args) throws Exception {
     LOG.info("Launching PR labeler version {}", Utils.getVersion());
+    if (args.length > 0 && (args[0].equals("export") || args[0].equals("import"))) {
+      runSnapshotCommand(args[0], Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
     final Arguments arguments = new Arguments();
     final JCommander jCommander =
         JCommander.newBuilder()
@@ -29,35 +36,111 @@ public class App {
       return;
     }
 
+    if (arguments.flightRecordingFile != null) {
+      FlightRecording.start(
+          Paths.get(arguments.flightRecordingFile),
+          Duration.ofSeconds(arguments.flightRecordingMaxAgeInSeconds));
+    }
+
     final Path cacheDirectory = Paths.get(arguments.cacheDir);
+    // Jira and label caches are shared between instances, the GitHub HTTP caches are not
+    final Path instanceDirectory;
+    final ShardCoordinator coordinator;
+    if (arguments.instanceId == null) {
+      instanceDirectory = cacheDirectory;
+      coordinator = ShardCoordinator.singleInstance();
+    } else {
+      instanceDirectory = cacheDirectory.resolve("instances").resolve(arguments.instanceId);
+      coordinator =
+          ShardCoordinator.join(
+              cacheDirectory.resolve("coordination"),
+              arguments.instanceId,
+              Duration.ofSeconds(arguments.leaseDurationInSeconds));
+      ScheduledExecutorService heartbeatExecutor = Executors.newScheduledThreadPool(1);
+      heartbeatExecutor.scheduleAtFixedRate(
+          () -> {
+            try {
+              coordinator.heartbeat();
+            } catch (Throwable t) {
+              LOG.warn("Error while renewing lease", t);
+            }
+          },
+          0,
+          Math.max(1, arguments.leaseDurationInSeconds / 3),
+          TimeUnit.SECONDS);
+      Runtime.getRuntime()
+          .addShutdownHook(
+              new Thread(
+                  () -> {
+                    try {
+                      coordinator.close();
+                    } catch (IOException e) {
+                      LOG.warn("Error while giving up lease", e);
+                    }
+                  }));
+    }
 
-    DiskCachedJira jira =
-        new DiskCachedJira(arguments.jiraUrl, new DiskCache(cacheDirectory.resolve("jira")));
+    // unlinked PRs are only looked up by the instance owning their shard
+    NegativeCache unlinkedPullRequests =
+        new NegativeCache(
+            instanceDirectory.resolve("negativeCache"),
+            Duration.ofSeconds(arguments.negativeCacheTtlInSeconds));
+    // tickets are shared, and the invalidator of the leader clears them for all instances
+    NegativeCache unresolvableIssues =
+        new NegativeCache(
+            cacheDirectory.resolve("unresolvableIssues"),
+            Duration.ofSeconds(arguments.negativeCacheTtlInSeconds));
+    DiskCache jiraCache =
+        new DiskCache(cacheDirectory.resolve("jira"), arguments.jiraCacheMB * 1024L * 1024L);
+    DiskCachedJira jira = new DiskCachedJira(arguments.jiraUrl, jiraCache, unresolvableIssues);
+    JiraComponentCatalogue componentCatalogue =
+        new JiraComponentCatalogue(jira, "FLINK", cacheDirectory.resolve("jiraComponents"));
     PullRequestLabelCache labelCache =
-        new PullRequestLabelCache(cacheDirectory.resolve("labelCache"));
+        new PullRequestLabelCache(
+            cacheDirectory.resolve("labelCache"), arguments.labelCacheMB * 1024L * 1024L);
+    scheduleJanitors(
+        arguments.janitorIntervalInSeconds,
+        coordinator,
+        jiraCache.getJanitor(),
+        labelCache.getJanitor());
+    AuditLog auditLog = createAuditLog(arguments);
     PullUpdater updater =
         new PullUpdater(
             arguments.username,
             arguments.githubToken,
             arguments.mainCacheMB,
-            cacheDirectory,
-            jira,
+            instanceDirectory,
+            componentCatalogue,
             labelCache,
+            unlinkedPullRequests,
+            coordinator,
+            auditLog,
             arguments.repo);
 
-    int checkNewPRSeconds = arguments.pollingIntervalInSeconds;
+    AdaptiveScheduler prScheduler =
+        new AdaptiveScheduler(
+            "pull request polling",
+            arguments.pollingIntervalInSeconds,
+            arguments.minPollingIntervalInSeconds,
+            arguments.maxPollingIntervalInSeconds);
+    Utils.registerMBean(prScheduler, "AdaptiveScheduler", "pullRequests");
 
     Runnable checkPRs =
         () -> {
           while (true) {
+            int checkNewPRSeconds = prScheduler.getIntervalSeconds();
             try {
-              updater.checkPullRequests();
+              PullUpdater.CheckResult result = updater.checkPullRequests();
+              checkNewPRSeconds =
+                  prScheduler.nextInterval(
+                      result.changedPullRequests, result.remainingRequests, result.requestLimit);
+              jira.flushUnresolvableIssues();
             } catch (Throwable t) {
               LOG.warn("Error while checking for new PRs", t);
             }
             LOG.info("Done checking pull requests. Waiting for {} seconds", checkNewPRSeconds);
             try {
-              Thread.sleep(checkNewPRSeconds * 1000);
+              Thread.sleep(checkNewPRSeconds * 1000L);
             } catch (InterruptedException e) {
               LOG.warn("Thread got interrupted");
               break;
@@ -70,20 +153,137 @@ public class App {
     checkPRThread.start();
 
     ScheduledExecutorService jiraInvalidatorExecutor = Executors.newScheduledThreadPool(1);
+    Runnable refreshComponents =
+        () -> {
+          try {
+            componentCatalogue.refresh();
+          } catch (Throwable t) {
+            LOG.warn("Error while refreshing JIRA components", t);
+          }
+        };
+    if (arguments.componentRefreshIntervalInSeconds > 0) {
+      jiraInvalidatorExecutor.scheduleAtFixedRate(
+          refreshComponents, 0, arguments.componentRefreshIntervalInSeconds, TimeUnit.SECONDS);
+    } else {
+      // only load the components once, unknown components still trigger a refresh
+      jiraInvalidatorExecutor.execute(refreshComponents);
+    }
+
     int invalidateJiraSeconds = arguments.validationDurationInSeconds;
 
     if (invalidateJiraSeconds > 0) {
-      JiraCacheInvalidator invalidator = new JiraCacheInvalidator(jira, cacheDirectory);
-      jiraInvalidatorExecutor.scheduleAtFixedRate(
+      JiraCacheInvalidator invalidator = new JiraCacheInvalidator(jira, cacheDirectory, auditLog);
+      AdaptiveScheduler invalidatorScheduler =
+          new AdaptiveScheduler(
+              "JIRA invalidation",
+              invalidateJiraSeconds,
+              arguments.minValidationDurationInSeconds,
+              arguments.maxValidationDurationInSeconds);
+      Utils.registerMBean(invalidatorScheduler, "AdaptiveScheduler", "jiraInvalidation");
+      jiraInvalidatorExecutor.schedule(
+          new Runnable() {
+            @Override
+            public void run() {
+              int delay = invalidatorScheduler.getIntervalSeconds();
+              if (!coordinator.isLeader()) {
+                LOG.debug("Not the leader, skipping JIRA invalidation");
+              } else {
+                try {
+                  // JIRA doesn't tell us about its quota
+                  delay = invalidatorScheduler.nextInterval(invalidator.run(), -1, -1);
+                } catch (Throwable t) {
+                  LOG.warn("Error while invalidating JIRAs", t);
+                }
+              }
+              jiraInvalidatorExecutor.schedule(this, delay, TimeUnit.SECONDS);
+            }
+          },
+          0,
+          TimeUnit.SECONDS);
+    }
+  }
+
+  /** Exports the caches into a snapshot, or imports a snapshot into a new cache directory. */
+  private static void runSnapshotCommand(String command, String[] args) throws IOException {
+    final SnapshotArguments arguments = new SnapshotArguments();
+    final JCommander jCommander =
+        JCommander.newBuilder()
+            .addObject(arguments)
+            .programName("java -jar pr-labeler.jar " + command)
+            .args(args)
+            .build();
+
+    if (arguments.help) {
+      final StringBuilder helpOutput = new StringBuilder();
+      jCommander.usage(helpOutput);
+      LOG.info(helpOutput.toString());
+      return;
+    }
+
+    Path cacheDirectory = Paths.get(arguments.cacheDir);
+    Path snapshotFile = Paths.get(arguments.snapshotFile);
+    if (command.equals("export")) {
+      CacheSnapshot.export(cacheDirectory, snapshotFile);
+    } else {
+      CacheSnapshot.importSnapshot(snapshotFile, cacheDirectory);
+    }
+  }
+
+  /** Opens the audit log if one is configured, and flushes it on shutdown. */
+  private static AuditLog createAuditLog(Arguments arguments) throws IOException {
+    if (arguments.auditLogFile == null) {
+      return AuditLog.disabled();
+    }
+    AuditLog auditLog =
+        AuditLog.open(Paths.get(arguments.auditLogFile), arguments.auditLogBufferSize);
+    Utils.registerMBean(auditLog, "AuditLog", "auditLog");
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  try {
+                    auditLog.close();
+                  } catch (IOException e) {
+                    LOG.warn("Error while closing audit log", e);
+                  }
+                }));
+    return auditLog;
+  }
+
+  /**
+   * Runs the janitors on their own thread, so that they never hold up the PR checks. The caches are
+   * shared, so only the leader evicts entries; the other instances only persist their accesses.
+   */
+  private static void scheduleJanitors(
+      int intervalSeconds, ShardCoordinator coordinator, DiskBudgetJanitor... janitors) {
+    if (intervalSeconds <= 0) {
+      LOG.info("Cache janitors are disabled, the disk budgets are not enforced");
+      return;
+    }
+    ScheduledExecutorService janitorExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "cache-janitor");
+              thread.setDaemon(true);
+              return thread;
+            });
+    for (DiskBudgetJanitor janitor : janitors) {
+      Utils.registerMBean(janitor, "DiskBudgetJanitor", janitor.getName());
+      janitor.trackAccesses();
+      janitorExecutor.scheduleWithFixedDelay(
           () -> {
             try {
-              invalidator.run();
+              if (coordinator.isLeader()) {
+                janitor.run();
+              } else {
+                janitor.persistAccesses();
+              }
             } catch (Throwable t) {
-              LOG.warn("Error while invalidating JIRAs", t);
+              LOG.warn("Error while cleaning up cache", t);
             }
           },
-          0,
-          invalidateJiraSeconds,
+          intervalSeconds,
+          intervalSeconds,
           TimeUnit.SECONDS);
     }
   }
@@ -51,23 +51,130 @@ final class Arguments {
       description = "The polling interval in seconds.")
   int pollingIntervalInSeconds = 300;
 
+  @Parameter(
+      names = {"--minPollInterval"},
+      required = false,
+      description =
+          "The lower bound in seconds for adapting the polling interval to the PR activity."
+              + " Defaults to --pollInterval.")
+  int minPollingIntervalInSeconds = 0;
+
+  @Parameter(
+      names = {"--maxPollInterval"},
+      required = false,
+      description =
+          "The upper bound in seconds for adapting the polling interval to the PR activity and"
+              + " remaining rate limit. Defaults to --pollInterval.")
+  int maxPollingIntervalInSeconds = 0;
+
   @Parameter(
       names = {"--validationDuration", "-i"},
       required = false,
       description = "The validation duration for fetched jira labels.")
   int validationDurationInSeconds = 300;
 
+  @Parameter(
+      names = {"--minValidationDuration"},
+      required = false,
+      description =
+          "The lower bound in seconds for adapting the validation duration to the JIRA activity."
+              + " Defaults to --validationDuration.")
+  int minValidationDurationInSeconds = 0;
+
+  @Parameter(
+      names = {"--maxValidationDuration"},
+      required = false,
+      description =
+          "The upper bound in seconds for adapting the validation duration to the JIRA activity."
+              + " Defaults to --validationDuration.")
+  int maxValidationDurationInSeconds = 0;
+
+  @Parameter(
+      names = {"--componentRefreshInterval"},
+      required = false,
+      description =
+          "The interval in seconds for reloading the JIRA project's components. "
+              + "0 loads them only at startup and when a ticket has an unknown component.")
+  int componentRefreshIntervalInSeconds = 3600;
+
+  @Parameter(
+      names = {"--negativeCacheTtl"},
+      required = false,
+      description =
+          "How long in seconds PRs without a Jira ID and unresolvable Jira tickets are skipped.")
+  int negativeCacheTtlInSeconds = 7 * 24 * 60 * 60;
+
   @Parameter(
       names = {"--cacheDir", "-c"},
       required = true,
       description = "The directory where data is cached.")
   String cacheDir;
 
+  @Parameter(
+      names = {"--instanceId"},
+      required = false,
+      description =
+          "Enables running multiple instances on a shared cache directory. Every instance needs a"
+              + " unique, stable ID and processes its share of the pull requests.")
+  String instanceId;
+
+  @Parameter(
+      names = {"--leaseDuration"},
+      required = false,
+      description =
+          "The time in seconds after which the shard of an unresponsive instance is taken over.")
+  int leaseDurationInSeconds = 60;
+
   @Parameter(
       names = {"--mainCacheSize"},
       required = false)
   int mainCacheMB;
 
+  @Parameter(
+      names = {"--jiraCacheSize"},
+      required = false,
+      description = "The disk budget in MB of the JIRA component cache. 0 means unbounded.")
+  int jiraCacheMB = 0;
+
+  @Parameter(
+      names = {"--labelCacheSize"},
+      required = false,
+      description = "The disk budget in MB of the PR label cache. 0 means unbounded.")
+  int labelCacheMB = 0;
+
+  @Parameter(
+      names = {"--janitorInterval"},
+      required = false,
+      description = "The interval in seconds for enforcing the cache disk budgets. 0 disables it.")
+  int janitorIntervalInSeconds = 600;
+
+  @Parameter(
+      names = {"--flightRecording"},
+      required = false,
+      description =
+          "Enables an always-on JDK flight recording, which is periodically dumped to this file.")
+  String flightRecordingFile;
+
+  @Parameter(
+      names = {"--flightRecordingMaxAge"},
+      required = false,
+      description = "The time span in seconds covered by the flight recording dumps.")
+  int flightRecordingMaxAgeInSeconds = 3600;
+
+  @Parameter(
+      names = {"--auditLog"},
+      required = false,
+      description =
+          "Appends the labeling decisions as JSON lines to this file. Written asynchronously. "
+              + "The decisions are then only logged at debug level.")
+  String auditLogFile;
+
+  @Parameter(
+      names = {"--auditLogBufferSize"},
+      required = false,
+      description = "Number of audit log records to buffer. Records are dropped if it is full.")
+  int auditLogBufferSize = 8192;
+
   @Parameter(
       names = {"--help", "-h"},
       help = true,
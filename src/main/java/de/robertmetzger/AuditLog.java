@@ -0,0 +1,214 @@
+package de.robertmetzger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous audit log of the labeling decisions, written as one JSON object per line.
+ *
+ * <p>The calling threads only put {@link Record}s into a bounded buffer; formatting and writing
+ * happens on a background thread. If the buffer is full, records are dropped and counted, so that
+ * the audit log never holds up the labeling.
+ */
+public class AuditLog implements AuditLogMXBean, Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(AuditLog.class);
+
+  private static final int BATCH_SIZE = 256;
+
+  private final BlockingQueue<Record> buffer;
+  private final Writer writer;
+  private final Thread writerThread;
+  private final AtomicLong dropped = new AtomicLong();
+  private volatile long written = 0;
+  private volatile boolean running = true;
+
+  private AuditLog(Path file, int bufferSize) throws IOException {
+    this.buffer = new ArrayBlockingQueue<>(bufferSize);
+    this.writer =
+        Files.newBufferedWriter(
+            file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    this.writerThread = new Thread(this::writeLoop, "audit-log-writer");
+    this.writerThread.setDaemon(true);
+    this.writerThread.start();
+  }
+
+  private AuditLog() {
+    this.buffer = null;
+    this.writer = null;
+    this.writerThread = null;
+  }
+
+  /** Appends the records to the given file. */
+  public static AuditLog open(Path file, int bufferSize) throws IOException {
+    return new AuditLog(file, bufferSize);
+  }
+
+  /** An audit log which discards all records. */
+  public static AuditLog disabled() {
+    return new AuditLog();
+  }
+
+  /** @return false if the records are discarded. */
+  public boolean isEnabled() {
+    return buffer != null;
+  }
+
+  public void record(Record record) {
+    if (buffer == null) {
+      return;
+    }
+    if (!buffer.offer(record)) {
+      dropped.incrementAndGet();
+    }
+  }
+
+  private void writeLoop() {
+    List<Record> batch = new ArrayList<>(BATCH_SIZE);
+    StringBuilder line = new StringBuilder();
+    while (running || !buffer.isEmpty()) {
+      try {
+        Record first = buffer.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        buffer.drainTo(batch, BATCH_SIZE - 1);
+        for (Record record : batch) {
+          line.setLength(0);
+          record.appendTo(line);
+          writer.append(line).append('\n');
+        }
+        writer.flush();
+        written += batch.size();
+      } catch (InterruptedException e) {
+        // check whether we are still running
+      } catch (IOException e) {
+        LOG.warn("Error while writing {} audit log records", batch.size(), e);
+      }
+      batch.clear();
+    }
+  }
+
+  /** Writes all buffered records and closes the file. */
+  @Override
+  public void close() throws IOException {
+    if (writerThread == null) {
+      return;
+    }
+    running = false;
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    writer.close();
+    if (dropped.get() > 0) {
+      LOG.warn("Dropped {} audit log records", dropped.get());
+    }
+  }
+
+  @Override
+  public long getWritten() {
+    return written;
+  }
+
+  @Override
+  public long getDropped() {
+    return dropped.get();
+  }
+
+  @Override
+  public int getBuffered() {
+    return buffer == null ? 0 : buffer.size();
+  }
+
+  /**
+   * A labeling decision. Fields which are not set are left out of the log. The collections are not
+   * copied, so they must not be modified after recording.
+   */
+  public static class Record {
+    final long timestamp = System.currentTimeMillis();
+    final String type;
+    int pullRequest = -1;
+    String jiraKey;
+    String outcome;
+    // where the Jira components came from
+    String source;
+    Collection<String> added;
+    Collection<String> removed;
+    long latencyNanos = -1;
+
+    public Record(String type) {
+      this.type = type;
+    }
+
+    void appendTo(StringBuilder json) {
+      json.append("{\"ts\":").append(timestamp);
+      appendString(json, "type", type);
+      if (pullRequest >= 0) {
+        json.append(",\"pr\":").append(pullRequest);
+      }
+      appendString(json, "jira", jiraKey);
+      appendString(json, "outcome", outcome);
+      appendString(json, "source", source);
+      appendStrings(json, "added", added);
+      appendStrings(json, "removed", removed);
+      if (latencyNanos >= 0) {
+        json.append(",\"latencyMicros\":").append(latencyNanos / 1000);
+      }
+      json.append('}');
+    }
+
+    private static void appendString(StringBuilder json, String key, String value) {
+      if (value != null) {
+        json.append(",\"").append(key).append("\":");
+        appendQuoted(json, value);
+      }
+    }
+
+    private static void appendStrings(StringBuilder json, String key, Collection<String> values) {
+      if (values == null || values.isEmpty()) {
+        return;
+      }
+      json.append(",\"").append(key).append("\":[");
+      boolean first = true;
+      for (String value : values) {
+        if (!first) {
+          json.append(',');
+        }
+        appendQuoted(json, value);
+        first = false;
+      }
+      json.append(']');
+    }
+
+    private static void appendQuoted(StringBuilder json, String value) {
+      json.append('"');
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '"' || c == '\\') {
+          json.append('\\').append(c);
+        } else if (c < 0x20) {
+          json.append(String.format("\\u%04x", (int) c));
+        } else {
+          json.append(c);
+        }
+      }
+      json.append('"');
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package de.robertmetzger;
+
+/** JMX view on the {@link AuditLog}. */
+public interface AuditLogMXBean {
+  long getWritten();
+
+  /** @return the number of records which were dropped because the buffer was full. */
+  long getDropped();
+
+  int getBuffered();
+}
@@ -0,0 +1,143 @@
+package de.robertmetzger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exports a cache directory into a single compressed snapshot file and imports it into a new cache
+ * directory, so that new deployments start with warm caches.
+ *
+ * <p>The snapshot is a zip file starting with a versioned {@link #MANIFEST} entry, followed by all
+ * files of the cache directory: the Jira and label caches, the GitHub HTTP caches, and the data
+ * file of the invalidator. Leases of running instances, scan cursors and temporary files are left
+ * out. For a consistent snapshot of the GitHub HTTP caches, the instance should not be running.
+ */
+public class CacheSnapshot {
+  private static final Logger LOG = LoggerFactory.getLogger(CacheSnapshot.class);
+
+  static final String MANIFEST = "SNAPSHOT";
+  static final int FORMAT_VERSION = 1;
+
+  public static void export(Path cacheDirectory, Path snapshotFile) throws IOException {
+    Properties manifest = new Properties();
+    manifest.setProperty("formatVersion", Integer.toString(FORMAT_VERSION));
+    manifest.setProperty("createdAt", Long.toString(System.currentTimeMillis()));
+    String version = Utils.getVersion();
+    if (version != null) {
+      manifest.setProperty("labelerVersion", version);
+    }
+
+    final int[] files = {0};
+    try (ZipOutputStream zip =
+        new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(snapshotFile)))) {
+      zip.putNextEntry(new ZipEntry(MANIFEST));
+      manifest.store(zip, null);
+      zip.closeEntry();
+
+      Files.walkFileTree(
+          cacheDirectory,
+          new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+              if (!dir.equals(cacheDirectory)
+                  && dir.getFileName().toString().equals("coordination")) {
+                return FileVisitResult.SKIP_SUBTREE;
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                throws IOException {
+              String name = file.getFileName().toString();
+              if (name.startsWith(".")
+                  || name.endsWith(".tmp")
+                  || name.equals("__pr-scan-cursor")
+                  || file.equals(snapshotFile)) {
+                return FileVisitResult.CONTINUE;
+              }
+              byte[] content;
+              try {
+                content = Files.readAllBytes(file);
+              } catch (NoSuchFileException e) {
+                LOG.debug("Skipping {}, which got removed in the meantime", file);
+                return FileVisitResult.CONTINUE;
+              }
+              ZipEntry entry = new ZipEntry(toEntryName(cacheDirectory.relativize(file)));
+              // keeps the least recently used order for the cache janitors
+              entry.setTime(attrs.lastModifiedTime().toMillis());
+              zip.putNextEntry(entry);
+              zip.write(content);
+              zip.closeEntry();
+              files[0]++;
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    }
+    LOG.info("Exported {} files from {} to {}", files[0], cacheDirectory, snapshotFile);
+  }
+
+  public static void importSnapshot(Path snapshotFile, Path cacheDirectory) throws IOException {
+    if (Files.isDirectory(cacheDirectory)) {
+      try (DirectoryStream<Path> existing = Files.newDirectoryStream(cacheDirectory)) {
+        if (existing.iterator().hasNext()) {
+          throw new IOException("Cache directory " + cacheDirectory + " is not empty");
+        }
+      }
+    }
+    Files.createDirectories(cacheDirectory);
+    Path root = cacheDirectory.toAbsolutePath().normalize();
+
+    int files = 0;
+    try (ZipInputStream zip =
+        new ZipInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+      ZipEntry entry = zip.getNextEntry();
+      if (entry == null || !entry.getName().equals(MANIFEST)) {
+        throw new IOException(snapshotFile + " is not a cache snapshot");
+      }
+      Properties manifest = new Properties();
+      manifest.load(zip);
+      int formatVersion = Integer.parseInt(manifest.getProperty("formatVersion", "-1"));
+      if (formatVersion != FORMAT_VERSION) {
+        throw new IOException("Unsupported snapshot format version " + formatVersion);
+      }
+
+      while ((entry = zip.getNextEntry()) != null) {
+        Path target = root.resolve(entry.getName()).normalize();
+        if (!target.startsWith(root)) {
+          throw new IOException("Invalid entry " + entry.getName() + " in snapshot");
+        }
+        Files.createDirectories(target.getParent());
+        Files.copy(zip, target);
+        Files.setLastModifiedTime(target, entry.getLastModifiedTime());
+        files++;
+      }
+    }
+    LOG.info("Imported {} files from {} into {}", files, snapshotFile, cacheDirectory);
+  }
+
+  private static String toEntryName(Path relativePath) {
+    StringBuilder name = new StringBuilder();
+    for (Path part : relativePath) {
+      if (name.length() > 0) {
+        name.append('/');
+      }
+      name.append(part.toString());
+    }
+    return name.toString();
+  }
+}
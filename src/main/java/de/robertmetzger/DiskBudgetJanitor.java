@@ -0,0 +1,174 @@
+package de.robertmetzger;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a one-file-per-entry cache directory within a disk budget by evicting the least recently
+ * used entries.
+ *
+ * <p>Caches only {@link #recordAccess(Path) record} accesses in memory; {@link #run()} is meant to
+ * be called periodically from a background thread. It persists the recorded accesses as
+ * modification times (file access times are usually not maintained), and then deletes the oldest
+ * files until the directory is below 90% of the budget.
+ *
+ * <p>Accesses are only recorded once {@link #trackAccesses()} has been called, so that they do not
+ * pile up in memory if the janitor is never run.
+ */
+public class DiskBudgetJanitor implements DiskBudgetJanitorMXBean {
+  private static final Logger LOG = LoggerFactory.getLogger(DiskBudgetJanitor.class);
+
+  private static final double LOW_WATERMARK = 0.9;
+  // temporary files of interrupted writes
+  private static final long STALE_TMP_FILE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private final String name;
+  private final Path directory;
+  private final long budgetBytes;
+  private final Map<Path, Long> accesses = new ConcurrentHashMap<>();
+  private volatile boolean trackingAccesses = false;
+
+  private final AtomicLong evictions = new AtomicLong();
+  private volatile long sizeBytes = -1;
+  private volatile long entries = -1;
+
+  /** @param budgetBytes the maximum size of the directory, or 0 to only report its size */
+  public DiskBudgetJanitor(String name, Path directory, long budgetBytes) {
+    this.name = name;
+    this.directory = directory;
+    this.budgetBytes = budgetBytes;
+  }
+
+  /** Starts recording accesses, {@link #run()} needs to be called periodically from now on. */
+  public void trackAccesses() {
+    trackingAccesses = true;
+  }
+
+  public void recordAccess(Path file) {
+    if (trackingAccesses) {
+      accesses.put(file, System.currentTimeMillis());
+    }
+  }
+
+  public synchronized void run() throws IOException {
+    persistAccesses();
+
+    long now = System.currentTimeMillis();
+    List<CacheFile> files = new ArrayList<>();
+    long size = 0;
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path file : stream) {
+        BasicFileAttributes attributes;
+        try {
+          attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+          continue; // the entry got removed in the meantime
+        }
+        if (!attributes.isRegularFile()) {
+          continue;
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (file.getFileName().toString().startsWith(".")) {
+          if (now - lastModified > STALE_TMP_FILE_MILLIS) {
+            Files.deleteIfExists(file);
+          }
+          continue;
+        }
+        files.add(new CacheFile(file, lastModified, attributes.size()));
+        size += attributes.size();
+      }
+    }
+
+    long evicted = 0;
+    if (budgetBytes > 0 && size > budgetBytes) {
+      files.sort(Comparator.comparingLong(f -> f.lastModified));
+      long target = (long) (budgetBytes * LOW_WATERMARK);
+      for (CacheFile file : files) {
+        if (size <= target) {
+          break;
+        }
+        if (Files.deleteIfExists(file.path)) {
+          evicted++;
+        }
+        size -= file.size;
+      }
+      LOG.info(
+          "Evicted {} entries from {} cache, now using {} of {} bytes",
+          evicted,
+          name,
+          size,
+          budgetBytes);
+    }
+    evictions.addAndGet(evicted);
+    sizeBytes = size;
+    entries = files.size() - evicted;
+  }
+
+  /**
+   * Only persists the recorded accesses without evicting anything, for instances which share the
+   * directory with the one running the janitor.
+   */
+  public synchronized void persistAccesses() {
+    Iterator<Map.Entry<Path, Long>> it = accesses.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<Path, Long> access = it.next();
+      it.remove();
+      try {
+        Files.setLastModifiedTime(access.getKey(), FileTime.fromMillis(access.getValue()));
+      } catch (IOException e) {
+        // the entry got removed in the meantime
+      }
+    }
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public long getSizeBytes() {
+    return sizeBytes;
+  }
+
+  @Override
+  public long getBudgetBytes() {
+    return budgetBytes;
+  }
+
+  @Override
+  public long getEntries() {
+    return entries;
+  }
+
+  @Override
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  private static class CacheFile {
+    private final Path path;
+    private final long lastModified;
+    private final long size;
+
+    private CacheFile(Path path, long lastModified, long size) {
+      this.path = path;
+      this.lastModified = lastModified;
+      this.size = size;
+    }
+  }
+}
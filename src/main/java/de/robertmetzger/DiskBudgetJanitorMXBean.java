@@ -0,0 +1,15 @@
+package de.robertmetzger;
+
+/** JMX view on the size of a cache maintained by a {@link DiskBudgetJanitor}. */
+public interface DiskBudgetJanitorMXBean {
+  String getName();
+
+  /** @return the size of the cache after the last run, or -1 if it did not run yet. */
+  long getSizeBytes();
+
+  long getBudgetBytes();
+
+  long getEntries();
+
+  long getEvictions();
+}
@@ -4,7 +4,9 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Base64;
 import java.util.List;
 import org.slf4j.Logger;
@@ -14,10 +16,23 @@ public class DiskCache implements Cache {
   private static final Logger LOG = LoggerFactory.getLogger(DiskCache.class);
 
   private final Path directory;
+  private final DiskBudgetJanitor janitor;
 
   public DiskCache(Path directory) throws IOException {
+    this(directory, 0);
+  }
+
+  /** @param budgetBytes the disk budget of the cache, or 0 for an unbounded cache */
+  public DiskCache(Path directory, long budgetBytes) throws IOException {
     Files.createDirectories(directory);
     this.directory = directory;
+    this.janitor =
+        new DiskBudgetJanitor(directory.getFileName().toString(), directory, budgetBytes);
+  }
+
+  /** The janitor needs to be run periodically to enforce the disk budget. */
+  public DiskBudgetJanitor getJanitor() {
+    return janitor;
   }
 
   private Path locateFile(String key) {
@@ -30,25 +45,51 @@ public class DiskCache implements Cache {
     if (key == null) {
       return null;
     }
-    Path file = locateFile(key);
-    if (Files.exists(file)) {
-
+    Events.CacheIo event = new Events.CacheIo();
+    event.begin();
+    event.cache = directory.getFileName().toString();
+    event.key = key;
+    try {
+      Path file = locateFile(key);
       try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(file))) {
-        return (List<String>) ois.readObject();
+        List<String> value = (List<String>) ois.readObject();
+        janitor.recordAccess(file);
+        event.hit = true;
+        if (event.isEnabled()) {
+          event.bytes = Files.size(file);
+        }
+        return value;
+      } catch (NoSuchFileException e) {
+        // not cached, or evicted by the janitor in the meantime
+        return null;
       } catch (IOException | ClassNotFoundException e) {
         LOG.warn("Error while deserializing cached value", e);
         return null;
       }
-    } else {
-      return null;
+    } finally {
+      event.commit();
     }
   }
 
   @Override
   public void put(String key, List<String> elements) throws IOException {
-    Path file = locateFile(key);
-    try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(file))) {
-      oos.writeObject(elements);
+    Events.CacheIo event = new Events.CacheIo();
+    event.begin();
+    event.cache = directory.getFileName().toString();
+    event.key = key;
+    event.write = true;
+    try {
+      // write atomically, the directory might be shared with other instances
+      Path tmpFile = Files.createTempFile(directory, ".", ".tmp");
+      try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(tmpFile))) {
+        oos.writeObject(elements);
+      }
+      if (event.isEnabled()) {
+        event.bytes = Files.size(tmpFile);
+      }
+      Files.move(tmpFile, locateFile(key), StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      event.commit();
     }
   }
 
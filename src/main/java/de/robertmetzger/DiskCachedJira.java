@@ -2,14 +2,16 @@ package de.robertmetzger;
 
 import com.atlassian.jira.rest.client.api.IssueRestClient;
 import com.atlassian.jira.rest.client.api.JiraRestClient;
-import com.atlassian.jira.rest.client.api.domain.BasicComponent;
+import com.atlassian.jira.rest.client.api.RestClientException;
 import com.atlassian.jira.rest.client.api.domain.Issue;
+import com.atlassian.jira.rest.client.api.domain.util.ErrorCollection;
 import com.atlassian.jira.rest.client.auth.AnonymousAuthenticationHandler;
 import com.atlassian.jira.rest.client.internal.async.AsynchronousJiraRestClientFactory;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import org.slf4j.Logger;
@@ -19,25 +21,35 @@ public class DiskCachedJira {
   private static final Logger LOG = LoggerFactory.getLogger(DiskCachedJira.class);
 
   private final Cache cache;
+  private final NegativeCache unresolvableIssues;
   private final URI jiraUri;
   private JiraRestClient restClient = null;
   private IssueRestClient issueClient = null;
 
-  public DiskCachedJira(String jiraUrl, Cache cache) throws URISyntaxException {
+  public DiskCachedJira(String jiraUrl, Cache cache, NegativeCache unresolvableIssues)
+      throws URISyntaxException {
     this.jiraUri = new URI(jiraUrl);
     this.cache = cache;
+    this.unresolvableIssues = unresolvableIssues;
   }
 
-  private List<String> getComponentsFromJiraApi(String issueId) throws JiraException {
+  private List<String> getComponentsFromJiraApi(String issueId, Events.JiraFetch event)
+      throws JiraException {
     Issue issue = null;
     int trie = 0;
     Throwable last = null;
     while (trie++ < 4) {
+      event.attempts = trie;
       try {
         issue = getIssueClient().getIssue(issueId).get();
         last = null;
         break; // successfully got issue
       } catch (Throwable t) {
+        if (isUnresolvable(t)) {
+          // retrying won't make a deleted or private ticket appear
+          throw new UnresolvableIssueException(
+              "Jira ticket " + issueId + " does not exist or is not accessible", t);
+        }
         LOG.info(
             "Got exception while getting Jira ticket "
                 + issueId
@@ -65,27 +77,98 @@ public class DiskCachedJira {
     }
 
     return StreamSupport.stream(issue.getComponents().spliterator(), false)
-        .map(BasicComponent::getName)
+        .map(component -> Long.toString(component.getId()))
         .collect(Collectors.toList());
   }
 
+  /**
+   * Jira answers with 404 for deleted tickets and for tickets which the anonymous user may not see.
+   * 401 and 403 are not considered final: they also occur during outages and maintenance, which
+   * must not put every ticket looked up meanwhile into the negative cache.
+   */
+  private static boolean isUnresolvable(Throwable t) {
+    Throwable cause = t instanceof ExecutionException ? t.getCause() : t;
+    if (!(cause instanceof RestClientException)) {
+      return false;
+    }
+    for (ErrorCollection errors : ((RestClientException) cause).getErrorCollections()) {
+      Integer status = errors.getStatus();
+      if (status != null && status == 404) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the IDs of the ticket's components, see {@link JiraComponentCatalogue} for resolving
+   *     them.
+   */
   public List<String> getComponents(String jiraId) throws JiraException {
-    List<String> fromCache = cache.get(jiraId);
-    if (fromCache != null) {
-      return fromCache;
-    } else {
-      List<String> fromJira = getComponentsFromJiraApi(jiraId);
-      try {
-        cache.put(jiraId, fromJira);
-      } catch (IOException e) {
-        throw new JiraException("Error while putting data into cache", e);
+    return getComponents(jiraId, null);
+  }
+
+  /** Like {@link #getComponents(String)}, and records where the components came from. */
+  public List<String> getComponents(String jiraId, AuditLog.Record record) throws JiraException {
+    Events.JiraFetch event = new Events.JiraFetch();
+    event.begin();
+    event.jiraKey = jiraId;
+    try {
+      List<String> fromCache = cache.get(jiraId);
+      if (fromCache != null) {
+        event.cacheHit = true;
+        setSource(record, "cache");
+        return fromCache;
+      } else {
+        if (unresolvableIssues.contains(jiraId)) {
+          setSource(record, "negativeCache");
+          throw new UnresolvableIssueException(
+              "Jira ticket " + jiraId + " is known to be unresolvable", null);
+        }
+        setSource(record, "jira");
+        List<String> fromJira;
+        try {
+          fromJira = getComponentsFromJiraApi(jiraId, event);
+        } catch (UnresolvableIssueException e) {
+          unresolvableIssues.put(jiraId);
+          throw e;
+        }
+        try {
+          cache.put(jiraId, fromJira);
+        } catch (IOException e) {
+          throw new JiraException("Error while putting data into cache", e);
+        }
+        LOG.info("Getting components for {} from JIRA server", jiraId);
+        return fromJira;
       }
-      LOG.info("Getting components for {} from JIRA server", jiraId);
-      return fromJira;
+    } finally {
+      event.commit();
+    }
+  }
+
+  private static void setSource(AuditLog.Record record, String source) {
+    if (record != null) {
+      record.source = source;
+    }
+  }
+
+  /** Replaces the cached components of a ticket, e.g. after migrating them to IDs. */
+  public void updateCache(String jiraId, List<String> components) throws JiraException {
+    try {
+      cache.put(jiraId, components);
+    } catch (IOException e) {
+      throw new JiraException("Error while putting data into cache", e);
     }
   }
 
+  /** Persists the unresolvable tickets and picks up the changes of other instances. */
+  public void flushUnresolvableIssues() throws IOException {
+    unresolvableIssues.flush();
+  }
+
   public boolean invalidateCache(String issueId) {
+    // the ticket might have become accessible
+    unresolvableIssues.remove(issueId);
     return cache.remove(issueId);
   }
 
@@ -110,4 +193,11 @@ public class DiskCachedJira {
       super(message, cause);
     }
   }
+
+  /** Thrown for Jira tickets which do not exist or are not publicly accessible. */
+  public static class UnresolvableIssueException extends JiraException {
+    public UnresolvableIssueException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
 }
@@ -0,0 +1,119 @@
+package de.robertmetzger;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder events for the stages of a pull request check. They are cheap if no recording
+ * is running; see {@link FlightRecording} for an always-on recording.
+ */
+final class Events {
+  private static final String CATEGORY = "PR Labeler";
+
+  private Events() {}
+
+  @Name("de.robertmetzger.PullRequestPage")
+  @Label("Pull Request Page")
+  @Category(CATEGORY)
+  @Description("Fetching a page of the pull request list")
+  static class PullRequestPage extends Event {
+    @Label("Page")
+    int page;
+
+    @Label("Pull Requests")
+    int pullRequests;
+
+    @Label("Skipped")
+    @Description("Pull requests which were processed by a previous, interrupted scan")
+    int skipped;
+
+    @Label("Bytes")
+    @Description("Content-Length of the response, 0 if it was compressed or chunked")
+    @DataAmount
+    long bytes;
+  }
+
+  @Name("de.robertmetzger.PullRequest")
+  @Label("Pull Request")
+  @Category(CATEGORY)
+  @Description("Processing a single pull request")
+  static class PullRequest extends Event {
+    @Label("Number")
+    int number;
+
+    @Label("Jira Key")
+    String jiraKey;
+
+    @Label("Outcome")
+    String outcome;
+  }
+
+  @Name("de.robertmetzger.JiraFetch")
+  @Label("Jira Fetch")
+  @Category(CATEGORY)
+  @Description("Getting the components of a Jira ticket")
+  static class JiraFetch extends Event {
+    @Label("Jira Key")
+    String jiraKey;
+
+    @Label("Cache Hit")
+    boolean cacheHit;
+
+    @Label("Attempts")
+    @Description("Requests to the Jira API, 0 if the ticket was cached")
+    int attempts;
+  }
+
+  @Name("de.robertmetzger.CacheIo")
+  @Label("Cache I/O")
+  @Category(CATEGORY)
+  @Description("Reading or writing an entry of an on-disk cache")
+  static class CacheIo extends Event {
+    @Label("Cache")
+    String cache;
+
+    @Label("Key")
+    String key;
+
+    @Label("Write")
+    boolean write;
+
+    @Label("Hit")
+    boolean hit;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+  }
+
+  @Name("de.robertmetzger.LabelLookup")
+  @Label("Label Lookup")
+  @Category(CATEGORY)
+  @Description("Looking up a GitHub label, creating it if it does not exist")
+  static class LabelLookup extends Event {
+    @Label("Label")
+    String label;
+
+    @Label("Created")
+    boolean created;
+  }
+
+  @Name("de.robertmetzger.LabelWrite")
+  @Label("Label Write")
+  @Category(CATEGORY)
+  @Description("Adding and removing labels of a pull request")
+  static class LabelWrite extends Event {
+    @Label("Number")
+    int number;
+
+    @Label("Added")
+    String added;
+
+    @Label("Removed")
+    String removed;
+  }
+}
@@ -0,0 +1,59 @@
+package de.robertmetzger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An always-on flight recording with the low-overhead "default" settings, including the {@link
+ * Events} of the labeler. The last {@code maxAge} of the recording are dumped periodically and on
+ * exit, so that slow checks can be analyzed with JDK Mission Control after the fact.
+ */
+public class FlightRecording {
+  private static final Logger LOG = LoggerFactory.getLogger(FlightRecording.class);
+
+  private static final long DUMP_INTERVAL_MINUTES = 15;
+
+  public static void start(Path dumpFile, Duration maxAge) throws IOException, ParseException {
+    Recording recording = new Recording(Configuration.getConfiguration("default"));
+    recording.setName("pr-labeler");
+    recording.setToDisk(true);
+    recording.setMaxAge(maxAge);
+    recording.setDumpOnExit(true);
+    recording.setDestination(dumpFile);
+    recording.start();
+    LOG.info("Started flight recording, dumping the last {} to {}", maxAge, dumpFile);
+
+    ScheduledExecutorService dumpExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "flight-recording-dump");
+              thread.setDaemon(true);
+              return thread;
+            });
+    dumpExecutor.scheduleWithFixedDelay(
+        () -> {
+          try {
+            // replace the previous dump atomically, so that it is always readable
+            Path tmpFile = dumpFile.resolveSibling(dumpFile.getFileName() + ".tmp");
+            recording.dump(tmpFile);
+            Files.move(tmpFile, dumpFile, StandardCopyOption.REPLACE_EXISTING);
+          } catch (Throwable t) {
+            LOG.warn("Error while dumping flight recording", t);
+          }
+        },
+        DUMP_INTERVAL_MINUTES,
+        DUMP_INTERVAL_MINUTES,
+        TimeUnit.MINUTES);
+  }
+}
@@ -29,9 +29,11 @@ public class JiraCacheInvalidator {
   private final DiskCachedJira jira;
   private final Path dataFile;
   private final SearchRestClient searchClient;
+  private final AuditLog auditLog;
 
-  public JiraCacheInvalidator(DiskCachedJira jira, Path dataDirectory) {
+  public JiraCacheInvalidator(DiskCachedJira jira, Path dataDirectory, AuditLog auditLog) {
     this.jira = jira;
+    this.auditLog = auditLog;
     // initialize time-tracking
     this.dataFile = dataDirectory.resolve("__last-invalidator-run");
     if (!Files.exists(dataFile)) {
@@ -65,7 +67,8 @@ public class JiraCacheInvalidator {
     return Instant.ofEpochMilli((Long.parseLong(tsString)));
   }
 
-  public void run() throws ExecutionException, InterruptedException, IOException {
+  /** @return the number of updated tickets. */
+  public int run() throws ExecutionException, InterruptedException, IOException {
     LOG.info("Invalidating updated JIRA tickets");
     Instant lastUpdated = getLastUpdateTime();
 
@@ -84,13 +87,26 @@ public class JiraCacheInvalidator {
 
     Iterator<Issue> resultIterator = result.getIssues().iterator();
     int i = 0;
+    int evicted = 0;
     while (resultIterator.hasNext()) {
       Issue ticket = resultIterator.next();
-      LOG.info("Invalidating ticket[{}] = {}", i++, ticket.getKey());
+      LOG.debug("Invalidating ticket[{}] = {}", i++, ticket.getKey());
+      long start = System.nanoTime();
+      AuditLog.Record record = new AuditLog.Record("invalidation");
+      record.jiraKey = ticket.getKey();
       if (jira.invalidateCache(ticket.getKey())) {
-        LOG.info("  Deleted {} from cache.", ticket.getKey());
+        record.outcome = "evicted";
+        evicted++;
+      } else {
+        record.outcome = "notCached";
       }
+      record.latencyNanos = System.nanoTime() - start;
+      auditLog.record(record);
     }
+    LOG.info("Checked {} JIRA tickets, deleted {} from cache", i, evicted);
+    // make tickets which became accessible visible to all instances
+    jira.flushUnresolvableIssues();
     writeCurrentTimeToDataFile();
+    return result.getTotal();
   }
 }
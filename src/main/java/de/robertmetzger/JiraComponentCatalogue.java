@@ -0,0 +1,334 @@
+package de.robertmetzger;
+
+import com.atlassian.jira.rest.client.api.domain.BasicComponent;
+import com.atlassian.jira.rest.client.api.domain.Project;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maps Jira component IDs to their GitHub label names.
+ *
+ * <p>The ~60 components of the project are loaded from Jira once and refreshed periodically. The
+ * label names are normalized and interned on load, so that the per-ticket cache only needs to store
+ * component IDs.
+ *
+ * <p>The catalogue is persisted, so that renamed components (same ID, new name) are detected even
+ * across restarts. The labels of renamed components are only used after the renames have been
+ * {@link #applyPendingRenames(LabelRenamer) applied}, which allows renaming the existing GitHub
+ * label instead of relabeling every pull request.
+ *
+ * <p>Multiple instances share the persisted catalogue. Only the leader applies renames; the other
+ * instances keep using the old labels until the leader has published the new ones, and pick up
+ * changes to the file before resolving each ticket.
+ */
+public class JiraComponentCatalogue {
+  private static final Logger LOG = LoggerFactory.getLogger(JiraComponentCatalogue.class);
+
+  static final String NO_COMPONENT_LABEL = PullUpdater.normalizeComponent("<none>");
+
+  // don't hammer Jira if tickets reference components which we can't resolve
+  private static final long MIN_REFRESH_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  private final DiskCachedJira jira;
+  private final String projectKey;
+  private final Path file;
+  private volatile Map<Long, String> labelsById = Collections.emptyMap();
+  private volatile long lastRefresh = 0;
+  // identifies the persisted catalogue when it was last read or written
+  private volatile List<Object> loadedVersion = null;
+
+  // labels of the latest refresh and the renames which need to be applied before using them
+  private Map<Long, String> pendingLabelsById = null;
+  private Map<String, String> pendingRenames = Collections.emptyMap();
+
+  public JiraComponentCatalogue(DiskCachedJira jira, String projectKey, Path file) {
+    this.jira = jira;
+    this.projectKey = projectKey;
+    this.file = file;
+    reloadIfChanged();
+  }
+
+  /** Picks up the labels published by another instance. */
+  public void reloadIfChanged() {
+    List<Object> version;
+    try {
+      version = getVersion();
+    } catch (NoSuchFileException e) {
+      return;
+    } catch (IOException e) {
+      LOG.warn("Error while checking Jira components", e);
+      return;
+    }
+    if (!version.equals(loadedVersion)) {
+      reload(version);
+    }
+  }
+
+  /** Every publish moves a new file in place, so the file key changes even within the same tick. */
+  private List<Object> getVersion() throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    return Arrays.asList(attributes.lastModifiedTime(), attributes.fileKey());
+  }
+
+  private synchronized void reload(List<Object> version) {
+    if (version.equals(loadedVersion)) {
+      return;
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(file))) {
+      Map<Long, String> labels = (Map<Long, String>) ois.readObject();
+      labels.replaceAll((id, label) -> label.intern());
+      labelsById = labels;
+      loadedVersion = version;
+    } catch (IOException | ClassNotFoundException e) {
+      LOG.warn("Error while deserializing Jira components", e);
+      return;
+    }
+    if (pendingLabelsById != null && findRenames(labelsById, pendingLabelsById).isEmpty()) {
+      LOG.info("Renamed Jira components have been published by another instance");
+      pendingLabelsById = null;
+      pendingRenames = Collections.emptyMap();
+    }
+  }
+
+  public synchronized void refresh() throws ExecutionException, InterruptedException {
+    lastRefresh = System.currentTimeMillis();
+    Project project = jira.getJiraClient().getProjectClient().getProject(projectKey).get();
+    Map<Long, String> namesById = new HashMap<>();
+    for (BasicComponent component : project.getComponents()) {
+      namesById.put(component.getId(), component.getName());
+    }
+    update(namesById);
+    LOG.info("Loaded {} components of Jira project {}", namesById.size(), projectKey);
+  }
+
+  synchronized void update(Map<Long, String> namesById) {
+    reloadIfChanged();
+    Map<Long, String> labels = new HashMap<>(namesById.size());
+    namesById.forEach((id, name) -> labels.put(id, PullUpdater.normalizeComponent(name).intern()));
+    lastRefresh = System.currentTimeMillis();
+
+    Map<String, String> renames = findRenames(labelsById, labels);
+    if (renames.isEmpty()) {
+      pendingLabelsById = null;
+      pendingRenames = Collections.emptyMap();
+      if (!labels.equals(labelsById)) {
+        publish(labels);
+      }
+    } else {
+      LOG.info("Jira components were renamed: {}", renames);
+      pendingLabelsById = labels;
+      pendingRenames = renames;
+    }
+  }
+
+  /**
+   * A label can only be renamed if neither the old nor the new label is used by any other
+   * component. Otherwise, the affected pull requests are relabeled individually.
+   */
+  static Map<String, String> findRenames(Map<Long, String> before, Map<Long, String> after) {
+    Map<String, Long> usages = new HashMap<>();
+    before.values().forEach(label -> usages.merge(label, 1L, Long::sum));
+    after.values().forEach(label -> usages.merge(label, 1L, Long::sum));
+
+    Map<String, String> renames = new HashMap<>();
+    after.forEach(
+        (id, label) -> {
+          String previous = before.get(id);
+          if (previous != null
+              && !previous.equals(label)
+              && usages.get(previous) == 1
+              && usages.get(label) == 1) {
+            renames.put(previous, label);
+          }
+        });
+    return renames;
+  }
+
+  /**
+   * Renames the labels of renamed components and starts using the latest labels. Needs to be
+   * called by the thread applying the labels, so that it never uses a new label before the old
+   * one has been renamed, and only by the leader among multiple instances.
+   */
+  public synchronized void applyPendingRenames(LabelRenamer renamer) {
+    if (pendingLabelsById == null) {
+      return;
+    }
+    pendingRenames.forEach(
+        (oldLabel, newLabel) -> {
+          try {
+            renamer.rename(oldLabel, newLabel);
+          } catch (Exception e) {
+            LOG.warn(
+                "Unable to rename label '{}' to '{}', relabeling pull requests instead",
+                oldLabel,
+                newLabel,
+                e);
+          }
+        });
+    publish(pendingLabelsById);
+    pendingLabelsById = null;
+    pendingRenames = Collections.emptyMap();
+  }
+
+  private void publish(Map<Long, String> labels) {
+    labelsById = labels;
+    try {
+      Path tmpFile = Files.createTempFile(file.getParent(), "." + file.getFileName(), ".tmp");
+      try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(tmpFile))) {
+        oos.writeObject(labels);
+      }
+      Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+      loadedVersion = getVersion();
+    } catch (IOException e) {
+      LOG.warn("Unable to persist Jira components", e);
+    }
+  }
+
+  /**
+   * Resolves the labels of a ticket. Component names, as stored by older versions of the cache,
+   * are migrated to IDs and written back. Otherwise such tickets would keep resolving to the old
+   * label of a renamed component, and undo the rename on GitHub.
+   */
+  public Set<String> getLabels(String jiraId, AuditLog.Record record)
+      throws DiskCachedJira.JiraException {
+    reloadIfChanged();
+    List<String> components = jira.getComponents(jiraId, record);
+    if (components.stream().anyMatch(component -> !isComponentId(component))) {
+      if (labelsById.isEmpty()) {
+        refreshIfStale("Jira components are not loaded yet");
+      }
+      List<String> ids = toComponentIds(components);
+      if (ids != null) {
+        jira.updateCache(jiraId, ids);
+      } else {
+        LOG.debug("Unable to migrate component names {} of {}, reloading it", components, jiraId);
+        jira.invalidateCache(jiraId);
+        ids = jira.getComponents(jiraId, record);
+      }
+      components = ids;
+    }
+    return getLabels(components);
+  }
+
+  /**
+   * @return the IDs of the given component names, or null if a name does not belong to exactly one
+   *     known component
+   */
+  List<String> toComponentIds(List<String> components) {
+    Map<Long, String> labels = labelsById;
+    List<String> ids = new ArrayList<>(components.size());
+    for (String component : components) {
+      if (isComponentId(component)) {
+        ids.add(component);
+        continue;
+      }
+      String label = PullUpdater.normalizeComponent(component);
+      Long match = null;
+      for (Map.Entry<Long, String> entry : labels.entrySet()) {
+        if (entry.getValue().equals(label)) {
+          if (match != null) {
+            // e.g. all "Formats (...)" components share a label
+            return null;
+          }
+          match = entry.getKey();
+        }
+      }
+      if (match == null) {
+        return null;
+      }
+      ids.add(Long.toString(match));
+    }
+    return ids;
+  }
+
+  private static boolean isComponentId(String component) {
+    for (int i = 0; i < component.length(); i++) {
+      if (!Character.isDigit(component.charAt(i))) {
+        return false;
+      }
+    }
+    return !component.isEmpty();
+  }
+
+  /**
+   * @param components component IDs as returned by {@link DiskCachedJira#getComponents(String)}.
+   * @return the labels of the components
+   * @throws UnknownComponentException if a component can not be resolved. The labels of the PR
+   *     must not be changed then, as they would be replaced by an incomplete set.
+   */
+  public Set<String> getLabels(List<String> components) throws UnknownComponentException {
+    if (components.isEmpty()) {
+      return Collections.singleton(NO_COMPONENT_LABEL);
+    }
+    Set<String> labels = new HashSet<>(components.size());
+    for (String component : components) {
+      labels.add(getLabel(component));
+    }
+    return labels;
+  }
+
+  private String getLabel(String component) throws UnknownComponentException {
+    long id;
+    try {
+      id = Long.parseLong(component);
+    } catch (NumberFormatException legacyName) {
+      throw new UnknownComponentException(
+          "Jira component name '" + component + "' has not been migrated to an ID");
+    }
+    String label = labelsById.get(id);
+    if (label == null) {
+      refreshIfStale("Unknown Jira component " + id);
+      label = labelsById.get(id);
+    }
+    if (label == null) {
+      throw new UnknownComponentException(
+          "Jira component " + id + " does not exist in project " + projectKey);
+    }
+    return label;
+  }
+
+  /**
+   * Synchronized with {@link #refresh()}, so that a refresh which is in progress (e.g. the initial
+   * one) is waited for instead of being considered recent.
+   */
+  private synchronized void refreshIfStale(String reason) {
+    if (System.currentTimeMillis() - lastRefresh > MIN_REFRESH_INTERVAL_MILLIS) {
+      LOG.info("{}, refreshing components", reason);
+      try {
+        refresh();
+      } catch (Exception e) {
+        LOG.warn("Error while refreshing Jira components", e);
+      }
+    }
+  }
+
+  /** A ticket references a component which is not in the catalogue. */
+  public static class UnknownComponentException extends DiskCachedJira.JiraException {
+    public UnknownComponentException(String message) {
+      super(message, null);
+    }
+  }
+
+  /** Renames a label on GitHub and in all caches. */
+  public interface LabelRenamer {
+    void rename(String oldLabel, String newLabel) throws IOException;
+  }
+}
@@ -0,0 +1,156 @@
+package de.robertmetzger;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers keys which are known to be unresolvable (PRs without a Jira ID in their title, Jira
+ * tickets which do not exist or are not accessible) for a fixed time to live.
+ *
+ * <p>All entries are kept in memory and persisted into a single file on {@link #flush()}, so that
+ * lookups do not touch the disk. The file may be shared by multiple instances: a flush merges the
+ * keys put and removed since the previous flush into the file, and picks up the changes of the
+ * other instances.
+ */
+public class NegativeCache {
+  private static final Logger LOG = LoggerFactory.getLogger(NegativeCache.class);
+
+  private final Path file;
+  private final Path lockFile;
+  private final long ttlMillis;
+  // key -> expiry time in epoch millis
+  private volatile Map<String, Long> entries = new ConcurrentHashMap<>();
+  // changes since the last flush
+  private final Map<String, Long> added = new HashMap<>();
+  private final Set<String> removed = new HashSet<>();
+  private volatile boolean dirty = false;
+  // identifies the file when it was last read or written
+  private List<Object> loadedVersion = null;
+
+  public NegativeCache(Path file, Duration ttl) throws IOException {
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    this.file = file;
+    this.lockFile = file.resolveSibling("." + file.getFileName() + ".lock");
+    this.ttlMillis = ttl.toMillis();
+    try {
+      entries.putAll(read());
+      loadedVersion = getVersion();
+    } catch (IOException | ClassNotFoundException e) {
+      LOG.warn("Error while deserializing negative cache, starting with an empty one", e);
+    }
+  }
+
+  /** @return true if the key has been marked as unresolvable and has not expired yet. */
+  public boolean contains(String key) {
+    Map<String, Long> current = entries;
+    Long expiry = current.get(key);
+    if (expiry == null) {
+      return false;
+    }
+    if (expiry <= System.currentTimeMillis()) {
+      current.remove(key, expiry);
+      dirty = true;
+      return false;
+    }
+    return true;
+  }
+
+  public synchronized void put(String key) {
+    long expiry = System.currentTimeMillis() + ttlMillis;
+    entries.put(key, expiry);
+    added.put(key, expiry);
+    removed.remove(key);
+    dirty = true;
+  }
+
+  public synchronized boolean remove(String key) {
+    added.remove(key);
+    removed.add(key);
+    dirty = true;
+    return entries.remove(key) != null;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Writes the changes since the last flush to disk and reloads the entries, if anything changed
+   * locally or on disk.
+   */
+  public synchronized void flush() throws IOException {
+    if (!dirty && Objects.equals(getVersion(), loadedVersion)) {
+      return;
+    }
+    // FileLocks are held per JVM, so instances in the same JVM need to be serialized as well.
+    synchronized (NegativeCache.class) {
+      try (FileChannel channel =
+              FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+          FileLock ignored = channel.lock()) {
+        Map<String, Long> merged;
+        try {
+          merged = read();
+        } catch (IOException | ClassNotFoundException e) {
+          LOG.warn("Error while deserializing negative cache, overwriting it", e);
+          merged = new HashMap<>();
+        }
+        merged.putAll(added);
+        merged.keySet().removeAll(removed);
+        long now = System.currentTimeMillis();
+        merged.values().removeIf(expiry -> expiry <= now);
+
+        if (dirty) {
+          Path directory = file.toAbsolutePath().getParent();
+          Path tmpFile = Files.createTempFile(directory, "." + file.getFileName(), ".tmp");
+          try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(tmpFile))) {
+            oos.writeObject(merged);
+          }
+          Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        entries = new ConcurrentHashMap<>(merged);
+        loadedVersion = getVersion();
+        added.clear();
+        removed.clear();
+        dirty = false;
+      }
+    }
+  }
+
+  private Map<String, Long> read() throws IOException, ClassNotFoundException {
+    try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(file))) {
+      return new HashMap<>((Map<String, Long>) ois.readObject());
+    } catch (NoSuchFileException e) {
+      return new HashMap<>();
+    }
+  }
+
+  /** Every write moves a new file in place, so the file key changes even within the same tick. */
+  private List<Object> getVersion() throws IOException {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      return Arrays.asList(attributes.lastModifiedTime(), attributes.fileKey());
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+}
@@ -4,8 +4,11 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Base64;
 import java.util.Collection;
 import java.util.Date;
@@ -23,25 +26,54 @@ public class PullRequestLabelCache {
   private static final Logger LOG = LoggerFactory.getLogger(PullRequestLabelCache.class);
 
   private final Path directory;
+  private final DiskBudgetJanitor janitor;
 
   public PullRequestLabelCache(Path directory) throws IOException {
+    this(directory, 0);
+  }
+
+  /** @param budgetBytes the disk budget of the cache, or 0 for an unbounded cache */
+  public PullRequestLabelCache(Path directory, long budgetBytes) throws IOException {
     Files.createDirectories(directory);
     this.directory = directory;
+    this.janitor =
+        new DiskBudgetJanitor(directory.getFileName().toString(), directory, budgetBytes);
+  }
+
+  /** The janitor needs to be run periodically to enforce the disk budget. */
+  public DiskBudgetJanitor getJanitor() {
+    return janitor;
   }
 
   public Collection<String> getLabelsFor(GHPullRequest pullRequest) throws IOException {
-    Path fileOnDisk = locateFile(Integer.toString(pullRequest.getNumber()));
-    if (!Files.exists(fileOnDisk)) {
+    Events.CacheIo event = new Events.CacheIo();
+    event.begin();
+    event.cache = directory.getFileName().toString();
+    event.key = Integer.toString(pullRequest.getNumber());
+    try {
+      Path fileOnDisk = locateFile(event.key);
+      CacheEntry entry;
+      try {
+        entry = getFromDisk(fileOnDisk);
+        if (event.isEnabled()) {
+          event.bytes = Files.size(fileOnDisk);
+        }
+      } catch (NoSuchFileException e) {
+        // not cached, or evicted by the janitor in the meantime
+        return getAndCache(pullRequest, fileOnDisk);
+      }
+      // cache >= GitHub API
+      if (entry.lastUpdated.equals(pullRequest.getUpdatedAt())
+          || entry.lastUpdated.after(pullRequest.getUpdatedAt())) {
+        // cache hit
+        janitor.recordAccess(fileOnDisk);
+        event.hit = true;
+        return entry.labels;
+      }
       return getAndCache(pullRequest, fileOnDisk);
+    } finally {
+      event.commit();
     }
-    CacheEntry entry = getFromDisk(fileOnDisk);
-    // cache >= GitHub API
-    if (entry.lastUpdated.equals(pullRequest.getUpdatedAt())
-        || entry.lastUpdated.after(pullRequest.getUpdatedAt())) {
-      // cache hit
-      return entry.labels;
-    }
-    return getAndCache(pullRequest, fileOnDisk);
   }
 
   private CacheEntry getFromDisk(Path fileOnDisk) throws IOException {
@@ -59,10 +91,48 @@ public class PullRequestLabelCache {
     entry.labels =
         pullRequest.getLabels().stream().map(GHLabel::getName).collect(Collectors.toList());
     entry.lastUpdated = pullRequest.getUpdatedAt();
-    try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(fileOnDisk))) {
+    writeToDisk(entry, fileOnDisk);
+    return entry.labels;
+  }
+
+  /**
+   * Replaces a label in all cached entries, after it has been renamed on GitHub.
+   *
+   * @return the number of updated entries
+   */
+  public int renameLabel(String oldLabel, String newLabel) throws IOException {
+    int renamed = 0;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        if (file.getFileName().toString().startsWith(".")) {
+          continue; // temporary file
+        }
+        CacheEntry entry;
+        try {
+          entry = getFromDisk(file);
+        } catch (IOException e) {
+          continue; // evicted in the meantime
+        }
+        if (entry.labels.contains(oldLabel)) {
+          entry.labels =
+              entry.labels.stream()
+                  .map(label -> label.equals(oldLabel) ? newLabel : label)
+                  .collect(Collectors.toList());
+          writeToDisk(entry, file);
+          renamed++;
+        }
+      }
+    }
+    return renamed;
+  }
+
+  private void writeToDisk(CacheEntry entry, Path fileOnDisk) throws IOException {
+    // write atomically, the directory might be shared with other instances
+    Path tmpFile = Files.createTempFile(directory, ".", ".tmp");
+    try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(tmpFile))) {
       oos.writeObject(entry);
     }
-    return entry.labels;
+    Files.move(tmpFile, fileOnDisk, StandardCopyOption.REPLACE_EXISTING);
   }
 
   public static class CacheEntry implements Serializable {
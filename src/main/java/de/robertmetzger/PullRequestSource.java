@@ -0,0 +1,180 @@
+package de.robertmetzger;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import org.kohsuke.github.GHPullRequest;
+import org.kohsuke.github.PagedIterable;
+import org.kohsuke.github.PagedIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams pull requests page by page and checkpoints the scan after every page.
+ *
+ * <p>Only the current page of {@link GHPullRequest}s is referenced at any time. The pull requests
+ * are expected newest first, so their numbers are descending. After every page, the cursor file
+ * stores the highest PR number of the scan and the lowest PR number processed so far. If a scan is
+ * aborted, the next scan processes the PRs opened in the meantime, skips the ones which were
+ * already processed and resumes below the last processed number. Once a scan finishes, the cursor
+ * is removed and the next scan starts from the first page again.
+ */
+public class PullRequestSource {
+  private static final Logger LOG = LoggerFactory.getLogger(PullRequestSource.class);
+
+  private final Path cursorFile;
+
+  public PullRequestSource(Path cursorFile) {
+    this.cursorFile = cursorFile;
+  }
+
+  public void scan(PagedIterable<GHPullRequest> pullRequests, Consumer<GHPullRequest> consumer)
+      throws IOException {
+    PagedIterator<GHPullRequest> pages = pullRequests.iterator();
+    scan(
+        new Iterator<List<GHPullRequest>>() {
+          @Override
+          public boolean hasNext() {
+            return pages.hasNext();
+          }
+
+          @Override
+          public List<GHPullRequest> next() {
+            return pages.nextPage();
+          }
+        },
+        GHPullRequest::getNumber,
+        PullRequestSource::getResponseSize,
+        consumer);
+  }
+
+  <T> void scan(Iterator<List<T>> pages, ToIntFunction<T> numberOf, Consumer<T> consumer)
+      throws IOException {
+    scan(pages, numberOf, page -> 0, consumer);
+  }
+
+  <T> void scan(
+      Iterator<List<T>> pages,
+      ToIntFunction<T> numberOf,
+      ToLongFunction<List<T>> sizeOf,
+      Consumer<T> consumer)
+      throws IOException {
+    Cursor previous = readCursor();
+    if (previous != null) {
+      LOG.info(
+          "Resuming pull request scan, PRs #{} to #{} were processed by the previous scan",
+          previous.lastProcessed,
+          previous.scanStart);
+    }
+
+    Cursor cursor = null;
+    int pageIndex = 0;
+    int skipped = 0;
+    while (pages.hasNext()) {
+      Events.PullRequestPage event = new Events.PullRequestPage();
+      event.begin();
+      List<T> page = pages.next();
+      event.end();
+      event.page = pageIndex;
+      event.pullRequests = page.size();
+      if (event.isEnabled()) {
+        event.bytes = sizeOf.applyAsLong(page);
+      }
+      for (T pullRequest : page) {
+        int number = numberOf.applyAsInt(pullRequest);
+        if (cursor == null) {
+          cursor = new Cursor(number);
+        }
+        // PRs opened since the previous scan started are above its range
+        boolean opened = previous != null && number > previous.scanStart;
+        if (previous == null || opened || number < previous.lastProcessed) {
+          consumer.accept(pullRequest);
+          if (!opened) {
+            cursor.lastProcessed = Math.min(cursor.lastProcessed, number);
+          }
+        } else {
+          event.skipped++;
+          cursor.lastProcessed = Math.min(cursor.lastProcessed, previous.lastProcessed);
+        }
+      }
+      event.commit();
+      skipped += event.skipped;
+      // until the range of the previous scan is reached, an abort needs to resume from its cursor
+      if (cursor != null && cursor.lastProcessed != Integer.MAX_VALUE) {
+        writeCursor(cursor);
+      }
+      pageIndex++;
+    }
+    LOG.info(
+        "Scanned {} pages of pull requests, {} PRs processed by the previous scan skipped",
+        pageIndex,
+        skipped);
+    Files.deleteIfExists(cursorFile);
+  }
+
+  /**
+   * The PagedIterator does not expose the response, but all pull requests of a page carry its
+   * headers.
+   *
+   * @return the Content-Length of the page, or 0 if unknown
+   */
+  private static long getResponseSize(List<GHPullRequest> page) {
+    Map<String, List<String>> headers =
+        page.isEmpty() ? null : page.get(0).getResponseHeaderFields();
+    if (headers == null) {
+      return 0;
+    }
+    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+      if ("Content-Length".equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+        try {
+          return Long.parseLong(header.getValue().get(0));
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 0;
+  }
+
+  private Cursor readCursor() {
+    if (!Files.exists(cursorFile)) {
+      return null;
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(cursorFile))) {
+      return (Cursor) ois.readObject();
+    } catch (IOException | ClassNotFoundException e) {
+      LOG.warn("Error while reading pull request scan cursor, starting from the first page", e);
+      return null;
+    }
+  }
+
+  private void writeCursor(Cursor cursor) throws IOException {
+    Path tmpFile = cursorFile.resolveSibling(cursorFile.getFileName() + ".tmp");
+    try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(tmpFile))) {
+      oos.writeObject(cursor);
+    }
+    Files.move(tmpFile, cursorFile, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /** All PRs from {@code lastProcessed} to {@code scanStart} have been processed. */
+  private static class Cursor implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int scanStart;
+    private int lastProcessed = Integer.MAX_VALUE;
+
+    private Cursor(int scanStart) {
+      this.scanStart = scanStart;
+    }
+  }
+}
@@ -3,9 +3,7 @@ package de.robertmetzger;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -15,6 +13,7 @@ import org.kohsuke.github.GHDirection;
 import org.kohsuke.github.GHIssueState;
 import org.kohsuke.github.GHPullRequest;
 import org.kohsuke.github.GHPullRequestQueryBuilder;
+import org.kohsuke.github.GHRateLimit;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.HttpException;
@@ -35,19 +34,30 @@ public class PullUpdater {
   private final GHRepository cachedRepoForPulls;
   private final GHRepository cachedRepoForLabels;
   private final PullRequestLabelCache labelCache;
+  private final PullRequestSource pullRequestSource;
+  private final NegativeCache unlinkedPullRequests;
+  private final ShardCoordinator coordinator;
+  private final AuditLog auditLog;
 
-  private final DiskCachedJira jira;
+  // PRs updated after the start of the previous check count as changed
+  private long previousCheckStart = System.currentTimeMillis();
+  private int changedPullRequests;
+
+  private final JiraComponentCatalogue componentCatalogue;
 
   public PullUpdater(
       String user,
       String token,
       int mainCacheMB,
       Path directory,
-      DiskCachedJira jira,
+      JiraComponentCatalogue componentCatalogue,
       PullRequestLabelCache labelCache,
+      NegativeCache unlinkedPullRequests,
+      ShardCoordinator coordinator,
+      AuditLog auditLog,
       String repoName)
       throws IOException {
-    this.jira = jira;
+    this.componentCatalogue = componentCatalogue;
 
     cachedGitHubForPulls =
         Utils.getGitHub(user, token, directory.resolve("githubPullCache"), mainCacheMB).gitHub;
@@ -62,9 +72,21 @@ public class PullUpdater {
     this.uncachedGitHubForWritingLabels = Utils.getGitHub(user, token, null, 0).gitHub;
     this.uncachedRepoForWritingLabels = uncachedGitHubForWritingLabels.getRepository(repoName);
     this.labelCache = labelCache;
+    this.pullRequestSource = new PullRequestSource(directory.resolve("__pr-scan-cursor"));
+    this.unlinkedPullRequests = unlinkedPullRequests;
+    this.coordinator = coordinator;
+    this.auditLog = auditLog;
   }
 
-  public void checkPullRequests() {
+  /** @return statistics about the check, for scheduling the next one. */
+  public CheckResult checkPullRequests() {
+    long checkStart = System.currentTimeMillis();
+    changedPullRequests = 0;
+    if (coordinator.isLeader()) {
+      componentCatalogue.applyPendingRenames(this::renameLabel);
+    } else {
+      componentCatalogue.reloadIfChanged();
+    }
     try {
       LOG.info(
           "Checking pull requests. GitHub API limits read: {}, write: {}",
@@ -117,55 +139,168 @@ public class PullUpdater {
       LOG.warn("Error while getting rate limits", e);
     }
 
-    for (GHPullRequest pullRequest : prQuery.list()) {
-      String jiraId = extractJiraId(pullRequest.getTitle());
-      if (jiraId == null) {
+    try {
+      pullRequestSource.scan(prQuery.list(), this::processPullRequest);
+    } catch (IOException e) {
+      LOG.warn("Error while listing pull requests. The next check resumes the scan.", e);
+    } finally {
+      try {
+        unlinkedPullRequests.flush();
+      } catch (IOException e) {
+        LOG.warn("Error while persisting negative cache", e);
+      }
+    }
+    previousCheckStart = checkStart;
+
+    int remaining = -1;
+    int limit = -1;
+    try {
+      GHRateLimit rateLimit = cachedGitHubForPulls.getRateLimit();
+      remaining = rateLimit.getRemaining();
+      limit = rateLimit.getLimit();
+    } catch (IOException e) {
+      LOG.warn("Error while getting rate limits", e);
+    }
+    return new CheckResult(changedPullRequests, remaining, limit);
+  }
+
+  private void processPullRequest(GHPullRequest pullRequest) {
+    try {
+      if (pullRequest.getUpdatedAt().getTime() > previousCheckStart) {
+        changedPullRequests++;
+      }
+    } catch (IOException e) {
+      LOG.warn("Error while getting update time of PR #{}", pullRequest.getNumber(), e);
+    }
+    if (!coordinator.isResponsibleFor(pullRequest.getNumber())) {
+      return;
+    }
+    Events.PullRequest event = new Events.PullRequest();
+    event.begin();
+    long start = System.nanoTime();
+    AuditLog.Record record = new AuditLog.Record("pullRequest");
+    record.pullRequest = pullRequest.getNumber();
+    try {
+      processPullRequest(pullRequest, record);
+    } finally {
+      record.latencyNanos = System.nanoTime() - start;
+      auditLog.record(record);
+      event.number = record.pullRequest;
+      event.jiraKey = record.jiraKey;
+      event.outcome = record.outcome;
+      event.commit();
+    }
+  }
+
+  private void processPullRequest(GHPullRequest pullRequest, AuditLog.Record record) {
+    record.outcome = "error";
+    String unlinkedKey;
+    try {
+      unlinkedKey = getUnlinkedKey(pullRequest);
+    } catch (IOException e) {
+      LOG.error("An error occurred while processing PR '{}'.", pullRequest.getTitle(), e);
+      return;
+    }
+    if (unlinkedPullRequests.contains(unlinkedKey)) {
+      record.outcome = "unlinked";
+      record.source = "negativeCache";
+      return;
+    }
+    String jiraId = extractJiraId(pullRequest.getTitle());
+    if (jiraId == null) {
+      // the audit log records the decisions, keep the per-PR logging off the default level
+      if (auditLog.isEnabled()) {
+        LOG.debug("Failed to extract Jira ID from PR '{}'.", pullRequest.getTitle());
+      } else {
         LOG.warn("Failed to extract Jira ID from PR '{}'.", pullRequest.getTitle());
-        continue;
       }
-      try {
-        Set<String> jiraComponents = normalizeComponents(jira.getComponents(jiraId));
-        Set<String> requiredLabels = getComponentLabels(jiraComponents);
+      unlinkedPullRequests.put(unlinkedKey);
+      record.outcome = "unlinked";
+      return;
+    }
+    record.jiraKey = jiraId;
+    try {
+      Set<String> jiraComponents = componentCatalogue.getLabels(jiraId, record);
+      Set<String> requiredLabels = getComponentLabels(jiraComponents);
 
-        Set<String> existingPRLabels =
-            labelCache.getLabelsFor(pullRequest).stream()
-                .filter(l -> l.startsWith(COMPONENT_PREFIX))
-                .collect(Collectors.toSet());
+      Set<String> existingPRLabels =
+          labelCache.getLabelsFor(pullRequest).stream()
+              .filter(l -> l.startsWith(COMPONENT_PREFIX))
+              .collect(Collectors.toSet());
 
-        Set<String> toAdd = new HashSet<>(requiredLabels);
-        toAdd.removeAll(existingPRLabels);
+      Set<String> toAdd = new HashSet<>(requiredLabels);
+      toAdd.removeAll(existingPRLabels);
 
-        Set<String> toRemove = new HashSet<>(existingPRLabels);
-        toRemove.removeAll(requiredLabels);
+      Set<String> toRemove = new HashSet<>(existingPRLabels);
+      toRemove.removeAll(requiredLabels);
 
-        if (toRemove.size() > 0 || toAdd.size() > 0) {
+      if (toRemove.size() > 0 || toAdd.size() > 0) {
+        if (auditLog.isEnabled()) {
+          LOG.debug(
+              "Updating PR '{}' adding labels '{}', removing '{}'",
+              pullRequest.getTitle(),
+              toAdd,
+              toRemove);
+        } else {
           LOG.info(
               "Updating PR '{}' adding labels '{}', removing '{}'",
               pullRequest.getTitle(),
               toAdd,
               toRemove);
+        }
+        Events.LabelWrite write = new Events.LabelWrite();
+        write.begin();
+        write.number = pullRequest.getNumber();
+        if (write.isEnabled()) {
+          write.added = String.join(",", toAdd);
+          write.removed = String.join(",", toRemove);
+        }
+        try {
           if (!toAdd.isEmpty()) {
             pullRequest.addLabels(toAdd.toArray(new String[] {}));
           }
           if (!toRemove.isEmpty()) {
             pullRequest.removeLabels(toRemove.toArray(new String[] {}));
           }
-        } else {
-          LOG.trace("Skipping PR '{}'", pullRequest.getTitle());
+        } finally {
+          // also record failed writes, e.g. timeouts
+          write.commit();
         }
-      } catch (HttpException e) {
-        LOG.error(
-            "An error occurred while processing PR '{}': {} {}.",
-            pullRequest.getTitle(),
-            e.getResponseCode(),
-            e.getResponseMessage(),
-            e);
-      } catch (Exception e) {
-        LOG.error("An error occurred while processing PR '{}'.", pullRequest.getTitle(), e);
+        record.added = toAdd;
+        record.removed = toRemove;
+        record.outcome = "updated";
+      } else {
+        LOG.trace("Skipping PR '{}'", pullRequest.getTitle());
+        record.outcome = "unchanged";
       }
+    } catch (DiskCachedJira.UnresolvableIssueException e) {
+      record.outcome = "unresolvable";
+      LOG.debug("Skipping PR '{}': {}", pullRequest.getTitle(), e.getMessage());
+    } catch (JiraComponentCatalogue.UnknownComponentException e) {
+      // not negative-cached: the PR is checked again once the components have been refreshed
+      record.outcome = "unknownComponent";
+      if (auditLog.isEnabled()) {
+        LOG.debug("Skipping PR '{}': {}", pullRequest.getTitle(), e.getMessage());
+      } else {
+        LOG.warn("Skipping PR '{}': {}", pullRequest.getTitle(), e.getMessage());
+      }
+    } catch (HttpException e) {
+      LOG.error(
+          "An error occurred while processing PR '{}': {} {}.",
+          pullRequest.getTitle(),
+          e.getResponseCode(),
+          e.getResponseMessage(),
+          e);
+    } catch (Exception e) {
+      LOG.error("An error occurred while processing PR '{}'.", pullRequest.getTitle(), e);
     }
   }
 
+  /** The key changes whenever the PR is updated, so that an edited title is checked again. */
+  private static String getUnlinkedKey(GHPullRequest pullRequest) throws IOException {
+    return "#" + pullRequest.getNumber() + "@" + pullRequest.getUpdatedAt().getTime();
+  }
+
   private Set<String> getComponentLabels(Set<String> jiraComponents) throws IOException {
     Set<String> labels = new HashSet<>(jiraComponents.size());
     for (String label : jiraComponents) {
@@ -179,14 +314,44 @@ public class PullUpdater {
   }
 
   private String createOrGetLabel(String labelString) throws IOException {
+    Events.LabelLookup event = new Events.LabelLookup();
+    event.begin();
+    event.label = labelString;
     try {
       return cachedRepoForLabels.getLabel(labelString).getName();
     } catch (FileNotFoundException noLabel) {
       LOG.info("Label '{}' did not exist, creating it", labelString);
+      event.created = true;
       // empty the cache for getting labels so that the newly created label can be found
       gitHubForLabelsCache.evictAll();
-      return uncachedRepoForWritingLabels.createLabel(labelString, LABEL_COLOR).getName();
+      try {
+        return uncachedRepoForWritingLabels.createLabel(labelString, LABEL_COLOR).getName();
+      } catch (HttpException e) {
+        if (e.getResponseCode() != 422) {
+          throw e;
+        }
+        // another instance created the label concurrently
+        return uncachedRepoForWritingLabels.getLabel(labelString).getName();
+      }
+    } finally {
+      event.commit();
+    }
+  }
+
+  /** Renames a label in place, instead of adding the new and removing the old one on every PR. */
+  private void renameLabel(String oldLabel, String newLabel) throws IOException {
+    try {
+      uncachedRepoForWritingLabels.getLabel(oldLabel).set().name(newLabel);
+      LOG.info("Renamed label '{}' to '{}'", oldLabel, newLabel);
+    } catch (FileNotFoundException noLabel) {
+      // fine if another instance renamed it already, otherwise the PRs need to be relabeled
+      uncachedRepoForWritingLabels.getLabel(newLabel);
     }
+    gitHubForLabelsCache.evictAll();
+    LOG.info(
+        "Updated {} cached pull requests with label '{}'",
+        labelCache.renameLabel(oldLabel, newLabel),
+        oldLabel);
   }
 
   private static final Pattern pattern = Pattern.compile("(?i).*(FLINK-[0-9]+).*");
@@ -199,19 +364,24 @@ public class PullUpdater {
     return null;
   }
 
-  static Set<String> normalizeComponents(List<String> components) {
-    if (components.size() == 0) {
-      return Collections.singleton(COMPONENT_PREFIX + "<none>");
-    }
-    return components.stream()
-        .map(
-            c -> {
-              if (c.startsWith("Formats")) {
-                return COMPONENT_PREFIX + "Formats";
-              }
-              String s = COMPONENT_PREFIX + c.replaceAll(" ", "");
-              return s.substring(0, Math.min(s.length(), 50));
-            })
-        .collect(Collectors.toSet());
+  static String normalizeComponent(String component) {
+    if (component.startsWith("Formats")) {
+      return COMPONENT_PREFIX + "Formats";
+    }
+    String s = COMPONENT_PREFIX + component.replace(" ", "");
+    return s.substring(0, Math.min(s.length(), 50));
+  }
+
+  /** Outcome of {@link #checkPullRequests()}. */
+  public static class CheckResult {
+    public final int changedPullRequests;
+    public final int remainingRequests;
+    public final int requestLimit;
+
+    public CheckResult(int changedPullRequests, int remainingRequests, int requestLimit) {
+      this.changedPullRequests = changedPullRequests;
+      this.remainingRequests = remainingRequests;
+      this.requestLimit = requestLimit;
+    }
   }
 }
@@ -0,0 +1,303 @@
+package de.robertmetzger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits the PR number space between multiple labeler instances and elects one leader among them.
+ *
+ * <p>Every instance holds a lease file in a shared coordination directory, which it renews with
+ * {@link #heartbeat()}. All instances with a valid lease are sorted by their ID; the position of an
+ * instance is its shard, and the first instance is the leader. Changes to the lease files are
+ * serialized through a file lock, so the mode can be tested locally by starting several processes
+ * on the same directory.
+ *
+ * <p>Whenever an instance notices that the set of members changed, it publishes the new members
+ * with an incremented generation. The instances cache the generation, refresh it on every heartbeat
+ * and check it at most every {@link #GENERATION_CHECK_MILLIS} before a PR or a leader task. So they
+ * switch to a new assignment within a second, instead of only on their next heartbeat, without
+ * reading a file for every PR.
+ */
+public class ShardCoordinator implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(ShardCoordinator.class);
+
+  private static final String MEMBER_PREFIX = "member-";
+  private static final String GENERATION_FILE = "generation";
+  static final long GENERATION_CHECK_MILLIS = 1000;
+
+  private final Path directory;
+  private final String instanceId;
+  private final long leaseMillis;
+  // distinguishes this process from a previous or concurrent one using the same instance ID
+  private final String token = UUID.randomUUID().toString();
+
+  private volatile Membership membership;
+  private volatile long leaseExpiry = Long.MAX_VALUE;
+  private volatile long nextGenerationCheck = 0;
+
+  private ShardCoordinator(Path directory, String instanceId, long leaseMillis) {
+    this.directory = directory;
+    this.instanceId = instanceId;
+    this.leaseMillis = leaseMillis;
+    this.membership = new Membership(0, Collections.singletonList(instanceId));
+  }
+
+  /** A coordinator for running a single instance, which is responsible for all PRs. */
+  public static ShardCoordinator singleInstance() {
+    return new ShardCoordinator(null, null, 0);
+  }
+
+  /**
+   * Joins the instances on the given directory. If the lease of the instance ID is still held, e.g.
+   * because the previous process using the ID crashed, this waits for up to twice the lease
+   * duration for it to expire.
+   */
+  public static ShardCoordinator join(Path directory, String instanceId, Duration lease)
+      throws IOException {
+    return join(directory, instanceId, lease, lease.multipliedBy(2));
+  }
+
+  static ShardCoordinator join(Path directory, String instanceId, Duration lease, Duration maxWait)
+      throws IOException {
+    Files.createDirectories(directory);
+    ShardCoordinator coordinator = new ShardCoordinator(directory, instanceId, lease.toMillis());
+    long deadline = System.currentTimeMillis() + maxWait.toMillis();
+    while (true) {
+      try {
+        coordinator.heartbeat();
+        return coordinator;
+      } catch (LeaseConflictException e) {
+        if (System.currentTimeMillis() >= deadline) {
+          throw e;
+        }
+        LOG.info("Waiting for the lease of a previous instance with ID '{}' to expire", instanceId);
+        try {
+          Thread.sleep(Math.min(1000, Math.max(1, lease.toMillis() / 4)));
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for lease");
+        }
+      }
+    }
+  }
+
+  /** Renews the lease of this instance and recomputes the shard assignment. */
+  public void heartbeat() throws IOException {
+    if (directory == null) {
+      return;
+    }
+    // FileLocks are held per JVM, so instances in the same JVM need to be serialized as well.
+    synchronized (ShardCoordinator.class) {
+      try (FileChannel channel =
+              FileChannel.open(
+                  directory.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+          FileLock ignored = channel.lock()) {
+        long now = System.currentTimeMillis();
+        Path memberFile = directory.resolve(MEMBER_PREFIX + instanceId);
+        Properties own = readLease(memberFile);
+        if (own != null
+            && !token.equals(own.getProperty("token"))
+            && Long.parseLong(own.getProperty("expiry")) > now) {
+          throw new LeaseConflictException(
+              "Another instance with ID '" + instanceId + "' is running");
+        }
+        Properties lease = new Properties();
+        lease.setProperty("token", token);
+        lease.setProperty("expiry", Long.toString(now + leaseMillis));
+        writeLease(memberFile, lease);
+
+        List<String> members = new ArrayList<>();
+        try (DirectoryStream<Path> files =
+            Files.newDirectoryStream(directory, MEMBER_PREFIX + "*")) {
+          for (Path file : files) {
+            Properties member = readLease(file);
+            if (member == null || Long.parseLong(member.getProperty("expiry")) <= now) {
+              LOG.info("Removing expired lease {}", file.getFileName());
+              Files.deleteIfExists(file);
+            } else {
+              members.add(file.getFileName().toString().substring(MEMBER_PREFIX.length()));
+            }
+          }
+        }
+        Collections.sort(members);
+
+        Membership published = readMembership();
+        if (published == null || !published.members.equals(members)) {
+          published = new Membership(published == null ? 1 : published.generation + 1, members);
+          writeMembership(published);
+        }
+        adopt(published);
+        leaseExpiry = now + leaseMillis;
+        nextGenerationCheck = now + GENERATION_CHECK_MILLIS;
+      }
+    }
+  }
+
+  /** @return whether this instance should process the given PR. */
+  public boolean isResponsibleFor(int pullRequestNumber) {
+    Membership current = checkGeneration();
+    int index = current.members.indexOf(instanceId);
+    return hasLease() && index >= 0 && pullRequestNumber % current.members.size() == index;
+  }
+
+  /** @return whether this instance should run the tasks which only one instance may run. */
+  public boolean isLeader() {
+    Membership current = checkGeneration();
+    return hasLease() && current.members.indexOf(instanceId) == 0;
+  }
+
+  /** Switches to the latest published membership, if it changed since the last check. */
+  private Membership checkGeneration() {
+    long now = System.currentTimeMillis();
+    if (directory == null || now < nextGenerationCheck) {
+      return membership;
+    }
+    nextGenerationCheck = now + GENERATION_CHECK_MILLIS;
+    try {
+      Membership published = readMembership();
+      if (published != null && published.generation != membership.generation) {
+        adopt(published);
+      }
+    } catch (IOException e) {
+      LOG.warn("Error while checking the membership generation", e);
+    }
+    return membership;
+  }
+
+  private synchronized void adopt(Membership published) {
+    if (published.generation == membership.generation) {
+      return;
+    }
+    LOG.info(
+        "Instance {} now owns shard {} of {} in generation {}: {}",
+        instanceId,
+        published.members.indexOf(instanceId),
+        published.members.size(),
+        published.generation,
+        published.members);
+    membership = published;
+  }
+
+  private boolean hasLease() {
+    // if we failed to renew our lease, other instances took over our shard
+    return System.currentTimeMillis() < leaseExpiry;
+  }
+
+  /** Gives up the lease, so that the other instances take over this instance's shard. */
+  @Override
+  public void close() throws IOException {
+    if (directory == null) {
+      return;
+    }
+    synchronized (ShardCoordinator.class) {
+      try (FileChannel channel =
+              FileChannel.open(
+                  directory.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+          FileLock ignored = channel.lock()) {
+        Path memberFile = directory.resolve(MEMBER_PREFIX + instanceId);
+        Properties own = readLease(memberFile);
+        if (own != null && token.equals(own.getProperty("token"))) {
+          Files.delete(memberFile);
+          // let the other instances take over right away
+          Membership published = readMembership();
+          if (published != null && published.members.contains(instanceId)) {
+            List<String> members = new ArrayList<>(published.members);
+            members.remove(instanceId);
+            writeMembership(new Membership(published.generation + 1, members));
+          }
+        }
+        leaseExpiry = 0;
+      }
+    }
+  }
+
+  private Membership readMembership() throws IOException {
+    Properties properties = readProperties(directory.resolve(GENERATION_FILE));
+    if (properties == null || properties.getProperty("generation") == null) {
+      return null;
+    }
+    String members = properties.getProperty("members", "");
+    return new Membership(
+        Long.parseLong(properties.getProperty("generation")),
+        members.isEmpty()
+            ? Collections.emptyList()
+            : Collections.unmodifiableList(Arrays.asList(members.split(","))));
+  }
+
+  private void writeMembership(Membership published) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty("generation", Long.toString(published.generation));
+    properties.setProperty("members", String.join(",", published.members));
+    writeProperties(directory.resolve(GENERATION_FILE), properties);
+  }
+
+  private static Properties readLease(Path file) throws IOException {
+    Properties lease = readProperties(file);
+    if (lease == null
+        || lease.getProperty("token") == null
+        || lease.getProperty("expiry") == null) {
+      return null;
+    }
+    return lease;
+  }
+
+  private static void writeLease(Path file, Properties lease) throws IOException {
+    writeProperties(file, lease);
+  }
+
+  private static Properties readProperties(Path file) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(file)) {
+      properties.load(in);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    return properties;
+  }
+
+  private static void writeProperties(Path file, Properties properties) throws IOException {
+    Path tmpFile = Files.createTempFile(file.getParent(), "." + file.getFileName(), ".tmp");
+    try (OutputStream out = Files.newOutputStream(tmpFile)) {
+      properties.store(out, null);
+    }
+    Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /** The sorted IDs of all instances holding a lease; the first one is the leader. */
+  private static class Membership {
+    private final long generation;
+    private final List<String> members;
+
+    private Membership(long generation, List<String> members) {
+      this.generation = generation;
+      this.members = members;
+    }
+  }
+
+  /** The instance ID is used by another running instance. */
+  static class LeaseConflictException extends IOException {
+    LeaseConflictException(String message) {
+      super(message);
+    }
+  }
+}
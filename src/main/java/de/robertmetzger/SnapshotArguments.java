@@ -0,0 +1,24 @@
+package de.robertmetzger;
+
+import com.beust.jcommander.Parameter;
+
+/** Command-line arguments of the {@code export} and {@code import} commands of the {@link App}. */
+final class SnapshotArguments {
+  @Parameter(
+      names = {"--cacheDir", "-c"},
+      required = true,
+      description = "The cache directory to export, or the empty directory to import into.")
+  String cacheDir;
+
+  @Parameter(
+      names = {"--file", "-f"},
+      required = true,
+      description = "The snapshot file.")
+  String snapshotFile;
+
+  @Parameter(
+      names = {"--help", "-h"},
+      help = true,
+      hidden = true)
+  boolean help = false;
+}
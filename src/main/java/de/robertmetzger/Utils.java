@@ -1,15 +1,22 @@
 package de.robertmetzger;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Path;
 import java.util.Properties;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import okhttp3.Cache;
 import okhttp3.OkHttpClient;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubBuilder;
 import org.kohsuke.github.extras.okhttp3.OkHttpGitHubConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class Utils {
+  private static final Logger LOG = LoggerFactory.getLogger(Utils.class);
 
   public static GitHubWithCache getGitHub(String user, String password, Path cacheDir, int cacheMB)
       throws IOException {
@@ -38,10 +45,25 @@ public class Utils {
     }
   }
 
+  /** Exposes the given MXBean under {@code de.robertmetzger:type=<type>,name=<name>}. */
+  public static void registerMBean(Object mBean, String type, String name) {
+    try {
+      ManagementFactory.getPlatformMBeanServer()
+          .registerMBean(
+              mBean, new ObjectName("de.robertmetzger:type=" + type + ",name=" + name));
+    } catch (JMException e) {
+      LOG.warn("Unable to register MBean {} {}", type, name, e);
+    }
+  }
+
   public static String getVersion() {
     Properties properties = new Properties();
-    try {
-      properties.load(Utils.class.getClassLoader().getResourceAsStream("git.properties"));
+    try (InputStream gitProperties =
+        Utils.class.getClassLoader().getResourceAsStream("git.properties")) {
+      if (gitProperties == null) {
+        return null;
+      }
+      properties.load(gitProperties);
     } catch (IOException e) {
       e.printStackTrace();
     }
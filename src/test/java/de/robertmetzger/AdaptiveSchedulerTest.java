@@ -0,0 +1,48 @@
+package de.robertmetzger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AdaptiveSchedulerTest {
+  @Test
+  public void testFixedInterval() {
+    AdaptiveScheduler scheduler = new AdaptiveScheduler("test", 300, 0, 0);
+    assertEquals(300, scheduler.nextInterval(1000, 5000, 5000, 300));
+    assertEquals(300, scheduler.nextInterval(0, 0, 5000, 300));
+  }
+
+  @Test
+  public void testBurstAndIdle() {
+    AdaptiveScheduler scheduler = new AdaptiveScheduler("test", 300, 60, 1800);
+
+    int interval = 300;
+    for (int i = 0; i < 5; i++) {
+      interval = scheduler.nextInterval(100, 5000, 5000, interval);
+    }
+    assertEquals(60, interval);
+
+    // the burst decays
+    String decisionAtMax = null;
+    for (int i = 0; i < 15; i++) {
+      int previous = interval;
+      interval = scheduler.nextInterval(0, 5000, 5000, interval);
+      assertTrue(interval >= previous);
+      if (interval == 1800 && previous != 1800) {
+        decisionAtMax = scheduler.getLastDecision();
+      }
+    }
+    assertEquals(1800, interval);
+    assertEquals("idle", decisionAtMax);
+    // staying at the maximum is not reported as a decision
+    assertEquals("unchanged", scheduler.getLastDecision());
+  }
+
+  @Test
+  public void testLowQuota() {
+    AdaptiveScheduler scheduler = new AdaptiveScheduler("test", 300, 60, 1800);
+    assertEquals(1800, scheduler.nextInterval(100, 10, 5000, 300));
+    assertEquals("low quota", scheduler.getLastDecision());
+  }
+}
@@ -0,0 +1,68 @@
+package de.robertmetzger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AuditLogTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRecordsAreWrittenOnClose() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("audit.jsonl");
+    AuditLog auditLog = AuditLog.open(file, 16);
+    Assert.assertTrue(auditLog.isEnabled());
+
+    AuditLog.Record update = new AuditLog.Record("pullRequest");
+    update.pullRequest = 123;
+    update.jiraKey = "FLINK-1";
+    update.outcome = "updated";
+    update.source = "jira";
+    update.added = Arrays.asList("component=Runtime", "component=\"Quoted\"");
+    update.removed = Collections.emptyList();
+    update.latencyNanos = 1_500_000;
+    auditLog.record(update);
+
+    AuditLog.Record invalidation = new AuditLog.Record("invalidation");
+    invalidation.jiraKey = "FLINK-2";
+    invalidation.outcome = "evicted";
+    auditLog.record(invalidation);
+    auditLog.close();
+
+    List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    Assert.assertEquals(2, lines.size());
+    Assert.assertEquals(
+        "{\"ts\":"
+            + update.timestamp
+            + ",\"type\":\"pullRequest\",\"pr\":123,\"jira\":\"FLINK-1\",\"outcome\":\"updated\","
+            + "\"source\":\"jira\",\"added\":[\"component=Runtime\",\"component=\\\"Quoted\\\"\"],"
+            + "\"latencyMicros\":1500}",
+        lines.get(0));
+    Assert.assertEquals(
+        "{\"ts\":"
+            + invalidation.timestamp
+            + ",\"type\":\"invalidation\",\"jira\":\"FLINK-2\",\"outcome\":\"evicted\"}",
+        lines.get(1));
+    Assert.assertEquals(2, auditLog.getWritten());
+    Assert.assertEquals(0, auditLog.getDropped());
+  }
+
+  @Test
+  public void testDisabled() throws IOException {
+    AuditLog auditLog = AuditLog.disabled();
+    Assert.assertFalse(auditLog.isEnabled());
+    auditLog.record(new AuditLog.Record("pullRequest"));
+    auditLog.close();
+    Assert.assertEquals(0, auditLog.getWritten());
+    Assert.assertEquals(0, auditLog.getBuffered());
+  }
+}
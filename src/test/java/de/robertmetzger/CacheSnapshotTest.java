@@ -0,0 +1,51 @@
+package de.robertmetzger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CacheSnapshotTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testExportImport() throws IOException {
+    Path source = folder.newFolder().toPath();
+    new DiskCache(source.resolve("jira")).put("FLINK-1", Collections.singletonList("42"));
+    Files.write(source.resolve("__last-invalidator-run"), "1234".getBytes(StandardCharsets.UTF_8));
+    Files.createDirectories(source.resolve("coordination"));
+    Files.write(source.resolve("coordination").resolve("member-a"), new byte[1]);
+    Files.write(source.resolve("__pr-scan-cursor"), new byte[1]);
+
+    Path snapshot = folder.newFolder().toPath().resolve("snapshot.zip");
+    CacheSnapshot.export(source, snapshot);
+
+    Path target = folder.newFolder().toPath().resolve("cache");
+    CacheSnapshot.importSnapshot(snapshot, target);
+
+    Assert.assertEquals(
+        Collections.singletonList("42"), new DiskCache(target.resolve("jira")).get("FLINK-1"));
+    Assert.assertArrayEquals(
+        Files.readAllBytes(source.resolve("__last-invalidator-run")),
+        Files.readAllBytes(target.resolve("__last-invalidator-run")));
+    Assert.assertFalse(Files.exists(target.resolve("coordination")));
+    Assert.assertFalse(Files.exists(target.resolve("__pr-scan-cursor")));
+  }
+
+  @Test(expected = IOException.class)
+  public void testImportIntoNonEmptyDirectory() throws IOException {
+    Path source = folder.newFolder().toPath();
+    Path snapshot = folder.newFolder().toPath().resolve("snapshot.zip");
+    CacheSnapshot.export(source, snapshot);
+
+    Path target = folder.newFolder().toPath();
+    Files.write(target.resolve("existing"), new byte[1]);
+    CacheSnapshot.importSnapshot(snapshot, target);
+  }
+}
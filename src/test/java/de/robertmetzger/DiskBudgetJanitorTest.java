@@ -0,0 +1,93 @@
+package de.robertmetzger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiskBudgetJanitorTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testEvictLeastRecentlyUsed() throws IOException {
+    Path dir = folder.newFolder().toPath();
+    long now = System.currentTimeMillis();
+    Path oldest = createFile(dir, "oldest", now - 3000);
+    Path old = createFile(dir, "old", now - 2000);
+    Path recent = createFile(dir, "recent", now - 1000);
+
+    DiskBudgetJanitor janitor = new DiskBudgetJanitor("test", dir, 250);
+    janitor.trackAccesses();
+    // accessing the oldest entry keeps it
+    janitor.recordAccess(oldest);
+    janitor.run();
+
+    Assert.assertTrue(Files.exists(oldest));
+    Assert.assertFalse(Files.exists(old));
+    Assert.assertTrue(Files.exists(recent));
+    Assert.assertEquals(1, janitor.getEvictions());
+    Assert.assertEquals(200, janitor.getSizeBytes());
+    Assert.assertEquals(2, janitor.getEntries());
+  }
+
+  @Test
+  public void testAccessesAreIgnoredUntilTracked() throws IOException {
+    Path dir = folder.newFolder().toPath();
+    long now = System.currentTimeMillis();
+    Path oldest = createFile(dir, "oldest", now - 2000);
+    Path recent = createFile(dir, "recent", now - 1000);
+
+    DiskBudgetJanitor janitor = new DiskBudgetJanitor("test", dir, 150);
+    janitor.recordAccess(oldest);
+    janitor.run();
+
+    Assert.assertFalse(Files.exists(oldest));
+    Assert.assertTrue(Files.exists(recent));
+  }
+
+  @Test
+  public void testPersistAccessesDoesNotEvict() throws IOException {
+    Path dir = folder.newFolder().toPath();
+    long now = System.currentTimeMillis();
+    Path oldest = createFile(dir, "oldest", now - 2000);
+    Path recent = createFile(dir, "recent", now - 1000);
+
+    // a follower only persists its accesses, the leader evicts based on them
+    DiskBudgetJanitor follower = new DiskBudgetJanitor("test", dir, 150);
+    follower.trackAccesses();
+    follower.recordAccess(oldest);
+    follower.persistAccesses();
+    Assert.assertTrue(Files.exists(oldest));
+    Assert.assertTrue(Files.exists(recent));
+
+    new DiskBudgetJanitor("test", dir, 150).run();
+    Assert.assertTrue(Files.exists(oldest));
+    Assert.assertFalse(Files.exists(recent));
+  }
+
+  @Test
+  public void testUnbounded() throws IOException {
+    Path dir = folder.newFolder().toPath();
+    createFile(dir, "a", 0);
+    createFile(dir, "b", 0);
+    createFile(dir, ".tmp", System.currentTimeMillis());
+
+    DiskBudgetJanitor janitor = new DiskBudgetJanitor("test", dir, 0);
+    janitor.run();
+
+    Assert.assertEquals(0, janitor.getEvictions());
+    Assert.assertEquals(200, janitor.getSizeBytes());
+    Assert.assertTrue(Files.exists(dir.resolve(".tmp")));
+  }
+
+  private static Path createFile(Path dir, String name, long lastModified) throws IOException {
+    Path file = Files.write(dir.resolve(name), new byte[100]);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+    return file;
+  }
+}
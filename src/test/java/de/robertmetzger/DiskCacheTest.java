@@ -29,4 +29,14 @@ public class DiskCacheTest {
 
     dc.remove("nonex");
   }
+
+  @Test
+  public void testEvictedEntryIsAMiss() throws IOException {
+    DiskCache dc = new DiskCache(folder.newFolder().toPath(), 1);
+    dc.put("yolo", Collections.singletonList("haha"));
+    dc.getJanitor().run();
+
+    Assert.assertNull(dc.get("yolo"));
+    Assert.assertEquals(1, dc.getJanitor().getEvictions());
+  }
 }
@@ -0,0 +1,152 @@
+package de.robertmetzger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JiraComponentCatalogueTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testLabelsById() throws Exception {
+    JiraComponentCatalogue catalogue = createCatalogue();
+    Map<Long, String> components = new HashMap<>();
+    components.put(1L, "Runtime / Checkpointing");
+    components.put(2L, "Formats (JSON, Avro, Parquet, ORC, SequenceFile)");
+    catalogue.update(components);
+
+    Set<String> labels = catalogue.getLabels(Arrays.asList("1", "2"));
+    assertEquals(
+        new HashSet<>(Arrays.asList("component=Runtime/Checkpointing", "component=Formats")),
+        labels);
+
+    // labels are shared between tickets
+    assertSame(
+        catalogue.getLabels(Collections.singletonList("1")).iterator().next(),
+        catalogue.getLabels(Collections.singletonList("1")).iterator().next());
+  }
+
+  @Test
+  public void testNoComponents() throws Exception {
+    JiraComponentCatalogue catalogue = createCatalogue();
+    catalogue.update(Collections.emptyMap());
+
+    assertEquals(
+        Collections.singleton("component=<none>"), catalogue.getLabels(Collections.emptyList()));
+  }
+
+  @Test(expected = JiraComponentCatalogue.UnknownComponentException.class)
+  public void testUnknownComponent() throws Exception {
+    JiraComponentCatalogue catalogue = createCatalogue();
+    catalogue.update(Collections.singletonMap(1L, "Runtime / Checkpointing"));
+
+    // a partially resolved ticket must not replace the labels of the PR
+    catalogue.getLabels(Arrays.asList("1", "42"));
+  }
+
+  @Test
+  public void testLegacyComponentNames() throws Exception {
+    JiraComponentCatalogue catalogue = createCatalogue();
+    Map<Long, String> components = new HashMap<>();
+    components.put(1L, "API / DataSet");
+    components.put(2L, "Formats (JSON, Avro, Parquet, ORC, SequenceFile)");
+    components.put(3L, "Formats (Avro)");
+    catalogue.update(components);
+
+    assertEquals(
+        Arrays.asList("1", "42"), catalogue.toComponentIds(Arrays.asList("API / DataSet", "42")));
+    // names which don't identify exactly one component need to be reloaded from Jira
+    assertNull(catalogue.toComponentIds(Collections.singletonList("Formats (Avro)")));
+    assertNull(catalogue.toComponentIds(Collections.singletonList("Removed Component")));
+  }
+
+  @Test(expected = JiraComponentCatalogue.UnknownComponentException.class)
+  public void testUnmigratedComponentName() throws Exception {
+    JiraComponentCatalogue catalogue = createCatalogue();
+    catalogue.update(Collections.singletonMap(1L, "API / DataSet"));
+
+    catalogue.getLabels(Collections.singletonList("API / DataSet"));
+  }
+
+  @Test
+  public void testRename() throws Exception {
+    Path file = folder.newFolder().toPath().resolve("components");
+    JiraComponentCatalogue catalogue = new JiraComponentCatalogue(null, "FLINK", file);
+    catalogue.update(Collections.singletonMap(1L, "Table SQL / API"));
+
+    // renames are detected across restarts
+    catalogue = new JiraComponentCatalogue(null, "FLINK", file);
+    catalogue.update(Collections.singletonMap(1L, "Table SQL / Planner"));
+    // the old label is used until the rename has been applied
+    assertEquals(
+        Collections.singleton("component=TableSQL/API"),
+        catalogue.getLabels(Collections.singletonList("1")));
+
+    Map<String, String> renames = new HashMap<>();
+    catalogue.applyPendingRenames(renames::put);
+    assertEquals(
+        Collections.singletonMap("component=TableSQL/API", "component=TableSQL/Planner"), renames);
+    assertEquals(
+        Collections.singleton("component=TableSQL/Planner"),
+        catalogue.getLabels(Collections.singletonList("1")));
+  }
+
+  @Test
+  public void testRenameIsAppliedByLeader() throws Exception {
+    Path file = folder.newFolder().toPath().resolve("components");
+    JiraComponentCatalogue leader = new JiraComponentCatalogue(null, "FLINK", file);
+    leader.update(Collections.singletonMap(1L, "Table SQL / API"));
+    JiraComponentCatalogue other = new JiraComponentCatalogue(null, "FLINK", file);
+
+    leader.update(Collections.singletonMap(1L, "Table SQL / Planner"));
+    other.update(Collections.singletonMap(1L, "Table SQL / Planner"));
+    // the other instance uses the old label until the leader has renamed it
+    other.reloadIfChanged();
+    assertEquals(
+        Collections.singleton("component=TableSQL/API"),
+        other.getLabels(Collections.singletonList("1")));
+
+    leader.applyPendingRenames((oldLabel, newLabel) -> {});
+    other.reloadIfChanged();
+    assertEquals(
+        Collections.singleton("component=TableSQL/Planner"),
+        other.getLabels(Collections.singletonList("1")));
+    // the renames are not pending anymore on the other instance
+    Map<String, String> renames = new HashMap<>();
+    other.applyPendingRenames(renames::put);
+    assertEquals(Collections.emptyMap(), renames);
+  }
+
+  @Test
+  public void testNoRenameOfSharedLabels() {
+    Map<Long, String> before = new HashMap<>();
+    before.put(1L, "component=Formats");
+    before.put(2L, "component=Formats");
+    before.put(3L, "component=API/DataSet");
+    Map<Long, String> after = new HashMap<>();
+    after.put(1L, "component=Formats");
+    after.put(2L, "component=Connectors/Avro");
+    after.put(3L, "component=API/DataSet(deprecated)");
+
+    assertEquals(
+        Collections.singletonMap("component=API/DataSet", "component=API/DataSet(deprecated)"),
+        JiraComponentCatalogue.findRenames(before, after));
+  }
+
+  private JiraComponentCatalogue createCatalogue() throws IOException {
+    return new JiraComponentCatalogue(null, "FLINK", folder.newFolder().toPath().resolve("c"));
+  }
+}
@@ -0,0 +1,69 @@
+package de.robertmetzger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NegativeCacheTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testPersistence() throws IOException {
+    Path file = folder.newFolder().toPath().resolve("negative");
+    NegativeCache nc = new NegativeCache(file, Duration.ofHours(1));
+    Assert.assertFalse(nc.contains("FLINK-1"));
+
+    nc.put("FLINK-1");
+    nc.put("#123@0");
+    Assert.assertTrue(nc.contains("FLINK-1"));
+    nc.flush();
+
+    NegativeCache reloaded = new NegativeCache(file, Duration.ofHours(1));
+    Assert.assertTrue(reloaded.contains("FLINK-1"));
+    Assert.assertTrue(reloaded.contains("#123@0"));
+
+    Assert.assertTrue(reloaded.remove("FLINK-1"));
+    Assert.assertFalse(reloaded.contains("FLINK-1"));
+    Assert.assertFalse(reloaded.remove("nonex"));
+  }
+
+  @Test
+  public void testSharedBetweenInstances() throws IOException {
+    Path file = folder.newFolder().toPath().resolve("negative");
+    NegativeCache leader = new NegativeCache(file, Duration.ofHours(1));
+    NegativeCache other = new NegativeCache(file, Duration.ofHours(1));
+
+    other.put("FLINK-1");
+    other.flush();
+    leader.flush();
+    Assert.assertTrue(leader.contains("FLINK-1"));
+
+    // the leader's invalidator clears the ticket while the other instance adds one
+    Assert.assertTrue(leader.remove("FLINK-1"));
+    other.put("FLINK-2");
+    leader.flush();
+    other.flush();
+
+    Assert.assertFalse(other.contains("FLINK-1"));
+    Assert.assertTrue(other.contains("FLINK-2"));
+    leader.flush();
+    Assert.assertTrue(leader.contains("FLINK-2"));
+    Assert.assertFalse(new NegativeCache(file, Duration.ofHours(1)).contains("FLINK-1"));
+  }
+
+  @Test
+  public void testExpiry() throws IOException {
+    Path file = folder.newFolder().toPath().resolve("negative");
+    NegativeCache nc = new NegativeCache(file, Duration.ZERO);
+
+    nc.put("FLINK-1");
+    nc.flush();
+    Assert.assertFalse(nc.contains("FLINK-1"));
+    Assert.assertEquals(0, new NegativeCache(file, Duration.ZERO).size());
+  }
+}
@@ -0,0 +1,118 @@
+package de.robertmetzger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PullRequestSourceTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testCompletedScanRemovesCursor() throws IOException {
+    Path cursorFile = folder.getRoot().toPath().resolve("cursor");
+    PullRequestSource source = new PullRequestSource(cursorFile);
+    List<Integer> processed = new ArrayList<>();
+
+    source.scan(pages(Arrays.asList(6, 5, 4), Arrays.asList(3, 2, 1)), pr -> pr, processed::add);
+
+    Assert.assertEquals(Arrays.asList(6, 5, 4, 3, 2, 1), processed);
+    Assert.assertFalse(Files.exists(cursorFile));
+  }
+
+  @Test
+  public void testResumeAfterAbort() throws IOException {
+    Path cursorFile = folder.getRoot().toPath().resolve("cursor");
+    List<Integer> processed = new ArrayList<>();
+
+    Iterator<List<Integer>> aborting =
+        abortAfter(2, pages(Arrays.asList(9, 8, 7), Arrays.asList(6, 5, 4), Arrays.asList(3, 2)));
+    try {
+      new PullRequestSource(cursorFile).scan(aborting, pr -> pr, processed::add);
+      Assert.fail("Scan should have been aborted");
+    } catch (IllegalStateException expected) {
+    }
+    Assert.assertEquals(Arrays.asList(9, 8, 7, 6, 5, 4), processed);
+    Assert.assertTrue(Files.exists(cursorFile));
+
+    // two new PRs shift all pages, the resumed scan still only processes the new and remaining PRs
+    processed.clear();
+    new PullRequestSource(cursorFile)
+        .scan(
+            pages(Arrays.asList(11, 10, 9), Arrays.asList(8, 7, 6), Arrays.asList(5, 4, 3, 2)),
+            pr -> pr,
+            processed::add);
+    Assert.assertEquals(Arrays.asList(11, 10, 3, 2), processed);
+    Assert.assertFalse(Files.exists(cursorFile));
+  }
+
+  @Test
+  public void testAbortWhileProcessingNewPullRequests() throws IOException {
+    Path cursorFile = folder.getRoot().toPath().resolve("cursor");
+    List<Integer> processed = new ArrayList<>();
+
+    try {
+      new PullRequestSource(cursorFile)
+          .scan(abortAfter(1, pages(Arrays.asList(5, 4), Arrays.asList(3))), pr -> pr, pr -> {});
+    } catch (IllegalStateException expected) {
+    }
+    // aborted before reaching the range of the first scan: its cursor must be kept
+    try {
+      new PullRequestSource(cursorFile)
+          .scan(
+              abortAfter(1, pages(Arrays.asList(7, 6), Arrays.asList(5, 4, 3))),
+              pr -> pr,
+              processed::add);
+    } catch (IllegalStateException expected) {
+    }
+    Assert.assertEquals(Arrays.asList(7, 6), processed);
+
+    processed.clear();
+    new PullRequestSource(cursorFile)
+        .scan(pages(Arrays.asList(7, 6), Arrays.asList(5, 4, 3)), pr -> pr, processed::add);
+    Assert.assertEquals(Arrays.asList(7, 6, 3), processed);
+  }
+
+  @Test
+  public void testCorruptCursorStartsFromFirstPage() throws IOException {
+    Path cursorFile = folder.getRoot().toPath().resolve("cursor");
+    Files.write(cursorFile, new byte[] {1, 2, 3});
+    List<Integer> processed = new ArrayList<>();
+
+    new PullRequestSource(cursorFile).scan(pages(Arrays.asList(2, 1)), pr -> pr, processed::add);
+
+    Assert.assertEquals(Arrays.asList(2, 1), processed);
+  }
+
+  @SafeVarargs
+  private static Iterator<List<Integer>> pages(List<Integer>... pages) {
+    return Arrays.asList(pages).iterator();
+  }
+
+  private static Iterator<List<Integer>> abortAfter(int pages, Iterator<List<Integer>> delegate) {
+    return new Iterator<List<Integer>>() {
+      private int returned = 0;
+
+      @Override
+      public boolean hasNext() {
+        return delegate.hasNext();
+      }
+
+      @Override
+      public List<Integer> next() {
+        if (returned++ == pages) {
+          throw new IllegalStateException("GitHub is unavailable");
+        }
+        return delegate.next();
+      }
+    };
+  }
+}
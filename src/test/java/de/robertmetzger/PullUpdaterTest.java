@@ -2,10 +2,7 @@ package de.robertmetzger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
-import static org.junit.Assert.assertTrue;
 
-import java.util.Collections;
-import java.util.Set;
 import org.junit.Test;
 
 public class PullUpdaterTest {
@@ -30,14 +27,14 @@ public class PullUpdaterTest {
 
   @Test
   public void testLength() {
-    Set<String> res =
-        PullUpdater.normalizeComponents(
-            Collections.singletonList("Formats(JSON,Avro,Parquet,ORC,SequenceFile)"));
-
-    assertTrue(res.contains("component=Formats"));
-
-    res = PullUpdater.normalizeComponents(Collections.singletonList("API/DataSet"));
-
-    assertTrue(res.contains("component=API/DataSet"));
+    assertEquals(
+        "component=Formats",
+        PullUpdater.normalizeComponent("Formats(JSON,Avro,Parquet,ORC,SequenceFile)"));
+    assertEquals("component=API/DataSet", PullUpdater.normalizeComponent("API / DataSet"));
+    // GitHub limits the length of label names
+    assertEquals(
+        50,
+        PullUpdater.normalizeComponent("Connectors / A very long component name for testing")
+            .length());
   }
 }
@@ -0,0 +1,84 @@
+package de.robertmetzger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ShardCoordinatorTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testShardAssignment() throws IOException {
+    Path dir = folder.newFolder().toPath();
+    ShardCoordinator a = ShardCoordinator.join(dir, "a", Duration.ofMinutes(1));
+    ShardCoordinator b = ShardCoordinator.join(dir, "b", Duration.ofMinutes(1));
+    a.heartbeat();
+
+    Assert.assertTrue(a.isLeader());
+    Assert.assertFalse(b.isLeader());
+    for (int pr = 0; pr < 10; pr++) {
+      Assert.assertTrue(a.isResponsibleFor(pr) ^ b.isResponsibleFor(pr));
+    }
+
+    // a leaves, b takes over everything
+    a.close();
+    b.heartbeat();
+    Assert.assertTrue(b.isLeader());
+    for (int pr = 0; pr < 10; pr++) {
+      Assert.assertTrue(b.isResponsibleFor(pr));
+      Assert.assertFalse(a.isResponsibleFor(pr));
+    }
+  }
+
+  @Test
+  public void testMembershipChangesAreSeenBeforeNextHeartbeat() throws Exception {
+    Path dir = folder.newFolder().toPath();
+    ShardCoordinator b = ShardCoordinator.join(dir, "b", Duration.ofMinutes(1));
+    Assert.assertTrue(b.isLeader());
+
+    // a joins with a lower ID, b must step down without renewing its lease
+    ShardCoordinator a = ShardCoordinator.join(dir, "a", Duration.ofMinutes(1));
+    Thread.sleep(ShardCoordinator.GENERATION_CHECK_MILLIS);
+    Assert.assertTrue(a.isLeader());
+    Assert.assertFalse(b.isLeader());
+    for (int pr = 0; pr < 10; pr++) {
+      Assert.assertTrue(a.isResponsibleFor(pr) ^ b.isResponsibleFor(pr));
+    }
+
+    a.close();
+    Thread.sleep(ShardCoordinator.GENERATION_CHECK_MILLIS);
+    Assert.assertTrue(b.isLeader());
+    Assert.assertTrue(b.isResponsibleFor(1));
+  }
+
+  @Test(expected = ShardCoordinator.LeaseConflictException.class)
+  public void testDuplicateInstanceId() throws IOException {
+    Path dir = folder.newFolder().toPath();
+    ShardCoordinator.join(dir, "a", Duration.ofMinutes(1));
+    ShardCoordinator.join(dir, "a", Duration.ofMinutes(1), Duration.ZERO);
+  }
+
+  @Test
+  public void testRestartTakesOverExpiredLease() throws IOException {
+    Path dir = folder.newFolder().toPath();
+    // the first process "crashes" without giving up its lease
+    ShardCoordinator crashed = ShardCoordinator.join(dir, "a", Duration.ofMillis(500));
+    ShardCoordinator restarted =
+        ShardCoordinator.join(dir, "a", Duration.ofMillis(500), Duration.ofSeconds(10));
+
+    Assert.assertTrue(restarted.isLeader());
+    Assert.assertFalse(crashed.isLeader());
+  }
+
+  @Test
+  public void testSingleInstance() {
+    ShardCoordinator single = ShardCoordinator.singleInstance();
+    Assert.assertTrue(single.isLeader());
+    Assert.assertTrue(single.isResponsibleFor(42));
+  }
+}